@@ -0,0 +1,250 @@
+package com.suse.matcher;
+
+import com.suse.matcher.facts.PotentialMatch;
+import com.suse.matcher.json.JsonInput;
+import com.suse.matcher.solver.Assignment;
+import com.suse.matcher.util.IdGenerator;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks the whole match pipeline and each of its phases on test scenario inputs and on synthetic
+ * inputs from {@link InputGenerator}.
+ *
+ * Phases that change their inputs (deduction changes facts, solving changes Matches) get fresh
+ * inputs before every invocation, outside of measured time. See the jmh profile in pom.xml to run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"--add-opens", "java.base/java.lang=ALL-UNNAMED"})
+public class MatcherBenchmark {
+
+    // Utility to convert from/to JSON
+    private static final JsonIO JSON_IO = new JsonIO();
+
+    /** Prefix of synthetic inputs, followed by the number of physical hosts. */
+    private static final String SYNTHETIC = "synthetic-";
+
+    /** Seed of synthetic inputs. */
+    private static final long SEED = 1;
+
+    /** The input: a test scenario number, or a synthetic input prefix and size. */
+    @Param({"2", "3", "11", "39", "48", SYNTHETIC + "50", SYNTHETIC + "200"})
+    public String input;
+
+    /** Logging context, only logging warnings so that output does not affect timings. */
+    private LoggerContext loggerContext;
+
+    /** Production matcher. */
+    private Matcher matcher;
+
+    /** Input data as JSON text. */
+    private String json;
+
+    /** Parsed input data. */
+    private JsonInput jsonInput;
+
+    /** Facts deduced from input data. */
+    private Collection<Object> deducedFacts;
+
+    /** Potential matches among deduced facts. */
+    private List<PotentialMatch> potentialMatches;
+
+    /** Solved problem. */
+    private Assignment solved;
+
+    /** Output directory of written reports. */
+    private Path outputDirectory;
+
+    /**
+     * Loads input data and runs all phases once, so that each can be benchmarked on the outputs of the previous.
+     *
+     * @throws IOException if input data cannot be read
+     */
+    @Setup(org.openjdk.jmh.annotations.Level.Trial)
+    public void setUpTrial() throws IOException {
+        loggerContext = Log4J.initialize(Optional.of(Level.WARN), Optional.empty());
+        matcher = new Matcher(false);
+
+        if (input.startsWith(SYNTHETIC)) {
+            json = JSON_IO.toJson(InputGenerator.withHosts(SEED, Integer.parseInt(input.substring(SYNTHETIC.length())))
+                .generate());
+        }
+        else {
+            try (InputStream is = MatcherBenchmark.class.getResourceAsStream("scenarios/" + input + "/input.json")) {
+                json = new String(is.readAllBytes(), Charset.defaultCharset());
+            }
+        }
+        jsonInput = JSON_IO.loadInput(json);
+
+        IdGenerator trialIdGenerator = new IdGenerator();
+        deducedFacts = new Drools(FactConverter.convertToFacts(jsonInput, trialIdGenerator), trialIdGenerator).getResult();
+        potentialMatches = deducedFacts.stream()
+            .filter(f -> f instanceof PotentialMatch)
+            .map(f -> (PotentialMatch) f)
+            .collect(Collectors.toList());
+        solved = matcher.match(jsonInput);
+        outputDirectory = Files.createTempDirectory("matcher-benchmark");
+    }
+
+    /**
+     * Releases resources.
+     *
+     * @throws IOException if written reports cannot be deleted
+     */
+    @TearDown(org.openjdk.jmh.annotations.Level.Trial)
+    public void tearDownTrial() throws IOException {
+        try (Stream<Path> paths = Files.list(outputDirectory)) {
+            for (Path path : paths.collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+        Files.delete(outputDirectory);
+        loggerContext.close();
+    }
+
+    /**
+     * Benchmarks the whole pipeline, from JSON text to solution.
+     *
+     * @return the solution
+     */
+    @Benchmark
+    public Assignment match() {
+        return matcher.match(JSON_IO.loadInput(json));
+    }
+
+    /**
+     * Benchmarks JSON parsing.
+     *
+     * @return the input data
+     */
+    @Benchmark
+    public JsonInput loadInput() {
+        return JSON_IO.loadInput(json);
+    }
+
+    /**
+     * Benchmarks conversion of input data to facts.
+     *
+     * @return the facts
+     */
+    @Benchmark
+    public Collection<Object> convertToFacts() {
+        return FactConverter.convertToFacts(jsonInput, new IdGenerator());
+    }
+
+    /**
+     * Benchmarks deduction by the rule engine.
+     *
+     * @param deductionInput fresh base facts
+     * @return the deduced facts
+     */
+    @Benchmark
+    public Collection<Object> deduce(DeductionInput deductionInput) {
+        return new Drools(deductionInput.baseFacts, deductionInput.idGenerator).getResult();
+    }
+
+    /**
+     * Benchmarks the computation of conflicts between Matches.
+     *
+     * @return the conflict map
+     */
+    @Benchmark
+    public Map<Integer, List<int[]>> getConflictMap() {
+        return Matcher.getConflictMap(potentialMatches);
+    }
+
+    /**
+     * Benchmarks the CSP solver.
+     *
+     * @param solverInput a fresh unsolved problem
+     * @return the solution
+     */
+    @Benchmark
+    public Assignment solve(SolverInput solverInput) {
+        return new OptaPlanner(solverInput.unsolved, false, new SolverOptions()).getResult();
+    }
+
+    /**
+     * Benchmarks writing of JSON and CSV reports.
+     *
+     * @throws IOException if reports cannot be written
+     */
+    @Benchmark
+    public void writeOutput() throws IOException {
+        new OutputWriter(Optional.of(outputDirectory.toString()), Optional.empty()).writeOutput(solved, Optional.empty());
+    }
+
+    /**
+     * Base facts for a deduction, which changes them.
+     */
+    @State(Scope.Thread)
+    public static class DeductionInput {
+
+        /** Id generator for the facts. */
+        private IdGenerator idGenerator;
+
+        /** Base facts. */
+        private Collection<Object> baseFacts;
+
+        /**
+         * Converts input data to facts again.
+         *
+         * @param benchmark the benchmark state
+         */
+        @Setup(org.openjdk.jmh.annotations.Level.Invocation)
+        public void setUp(MatcherBenchmark benchmark) {
+            idGenerator = new IdGenerator();
+            baseFacts = FactConverter.convertToFacts(benchmark.jsonInput, idGenerator);
+        }
+    }
+
+    /**
+     * Unsolved problem for a solver run, which changes its Matches.
+     */
+    @State(Scope.Thread)
+    public static class SolverInput {
+
+        /** Unsolved problem. */
+        private Assignment unsolved;
+
+        /**
+         * Builds the problem again.
+         *
+         * @param benchmark the benchmark state
+         */
+        @Setup(org.openjdk.jmh.annotations.Level.Invocation)
+        public void setUp(MatcherBenchmark benchmark) {
+            unsolved = benchmark.matcher.getProblem(benchmark.deducedFacts, List.of());
+        }
+    }
+}
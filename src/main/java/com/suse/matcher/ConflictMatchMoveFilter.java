@@ -1,15 +1,13 @@
 package com.suse.matcher;
 
 import com.suse.matcher.solver.Assignment;
+import com.suse.matcher.solver.ConflictGraph;
 import com.suse.matcher.solver.Match;
 
 import org.optaplanner.core.impl.heuristic.selector.common.decorator.SelectionFilter;
 import org.optaplanner.core.impl.heuristic.selector.move.generic.ChangeMove;
 import org.optaplanner.core.impl.score.director.ScoreDirector;
 
-import java.util.Set;
-import java.util.stream.Collectors;
-
 /**
  * Filters ChangeMoves by only accepting those that do not lead to conflicts.
  */
@@ -26,12 +24,15 @@ public class ConflictMatchMoveFilter implements SelectionFilter<Assignment, Chan
         if (confirmed) {
             Assignment solution = director.getWorkingSolution();
             Match match = (Match) move.getPlanningEntities().iterator().next();
-            Set<Integer> conflictingIds = solution.getConflictingMatchIds(match.id)
-                .collect(Collectors.toSet());
+            ConflictGraph conflicts = solution.getConflictGraph();
 
             // accept this Move only if no conflicting Match has been confirmed already
-            return solution.getMatches().stream()
-                .noneMatch(m -> m.confirmed == Boolean.TRUE && conflictingIds.contains(m.id));
+            for (int i = 0; i < conflicts.getDegree(match.id); i++) {
+                if (solution.getMatchById(conflicts.getConflictingId(match.id, i)).confirmed == Boolean.TRUE) {
+                    return false;
+                }
+            }
+            return true;
         }
         else {
             // leaving a Match unconfirmed is always OK
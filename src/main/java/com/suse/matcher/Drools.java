@@ -1,24 +1,44 @@
 package com.suse.matcher;
 
 import com.suse.matcher.facts.Message;
+import com.suse.matcher.util.IdGenerator;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.drools.core.common.DroolsObjectInputStream;
+import org.drools.core.common.DroolsObjectOutputStream;
+import org.kie.api.KieBase;
 import org.kie.api.KieServices;
+import org.kie.api.builder.KieBuilder;
 import org.kie.api.builder.KieFileSystem;
+import org.kie.api.builder.Message.Level;
+import org.kie.api.builder.ReleaseId;
 import org.kie.api.builder.model.KieBaseModel;
 import org.kie.api.builder.model.KieModuleModel;
 import org.kie.api.conf.EqualityBehaviorOption;
+import org.kie.api.event.rule.AgendaEventListener;
+import org.kie.api.event.rule.RuleRuntimeEventListener;
 import org.kie.api.logger.KieRuntimeLogger;
 import org.kie.api.runtime.KieSession;
 import org.kie.api.runtime.rule.Agenda;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Facade on the Drools rule engine.
@@ -39,8 +59,11 @@ public class Drools {
         "Matchability",
     };
 
-    /** Map to fact ids, see generateId(). */
-    private static final Map<List<Object>, Integer> ID_MAP = new HashMap<>();
+    /** Classpath location of the rule base precompiled at build time, see RuleBaseCompiler. */
+    static final String PRECOMPILED_RULE_BASE = "com/suse/matcher/rules/drools/rules.kbase";
+
+    /** Compiled rule bases, keyed by the rule groups they contain. See getKieBase(). */
+    private static final Map<List<String>, KieBase> KIE_BASES = new ConcurrentHashMap<>();
 
     /** Deduction resulting fact objects. */
     private final Collection<Object> result;
@@ -48,28 +71,40 @@ public class Drools {
     /**
      * Instantiates a Drools instance with the specified base facts.
      * @param baseFacts fact objects
+     * @param idGenerator generator of ids for deduced facts, shared with the base facts of the same run
      */
-    public Drools(Collection<Object> baseFacts) {
-        // setup engine
-        KieServices services = KieServices.Factory.get();
-        KieModuleModel module = services.newKieModuleModel();
-
-        // two facts are equal if equals() returns true (do not rely on ==)
-        KieBaseModel base = module.newKieBaseModel("rules")
-            .addPackage("com.suse.matcher.rules.drools")
-            .setEqualsBehavior(EqualityBehaviorOption.EQUALITY);
-        base.newKieSessionModel("session").setDefault(true);
+    public Drools(Collection<Object> baseFacts, IdGenerator idGenerator) {
+        this(baseFacts, idGenerator, Optional.empty());
+    }
 
-        // add rule files to engine
-        KieFileSystem kfs = services.newKieFileSystem();
-        for (String ruleGroup : RULE_GROUPS) {
-            kfs.write(services.getResources().newClassPathResource("com/suse/matcher/rules/drools/" + ruleGroup+ ".drl"));
-        }
-        kfs.writeKModuleXML(module.toXML());
-        services.newKieBuilder(kfs).buildAll();
+    /**
+     * Instantiates a Drools instance with the specified base facts, optionally profiling rules.
+     * @param baseFacts fact objects
+     * @param idGenerator generator of ids for deduced facts, shared with the base facts of the same run
+     * @param profiler a profiler to record statistics of rules, if any
+     */
+    public Drools(Collection<Object> baseFacts, IdGenerator idGenerator, Optional<RuleProfiler> profiler) {
+        this(baseFacts, idGenerator, profiler, new RunMetrics());
+    }
 
-        // start a new session
-        KieSession session = services.newKieContainer(services.getRepository().getDefaultReleaseId()).newKieSession();
+    /**
+     * Instantiates a Drools instance with the specified base facts, optionally profiling rules.
+     * @param baseFacts fact objects
+     * @param idGenerator generator of ids for deduced facts, shared with the base facts of the same run
+     * @param profiler a profiler to record statistics of rules, if any
+     * @param metrics metrics of the run, to record rule loading and deduction phases
+     */
+    public Drools(Collection<Object> baseFacts, IdGenerator idGenerator, Optional<RuleProfiler> profiler,
+            RunMetrics metrics) {
+        // start a new session on the (possibly cached) compiled rules
+        RunMetrics.Measurement loading = metrics.start("ruleLoading");
+        KieSession session = getKieBase().newKieSession();
+        loading.stop();
+        session.setGlobal("idGenerator", idGenerator);
+        profiler.ifPresent(p -> {
+            session.addEventListener((AgendaEventListener) p);
+            session.addEventListener((RuleRuntimeEventListener) p);
+        });
 
         // set rule ordering
         Agenda agenda = session.getAgenda();
@@ -79,17 +114,20 @@ public class Drools {
 
         // setup logging. This will not really log to the console but to slf4j which
         // in turn delegates to log4j, see log4j.xml for configuration
-        KieRuntimeLogger kieLogger = services.getLoggers().newConsoleLogger(session);
+        KieRuntimeLogger kieLogger = KieServices.Factory.get().getLoggers().newConsoleLogger(session);
 
         // insert base facts
+        RunMetrics.Measurement insertion = metrics.start("factInsertion");
         for (Object fact : baseFacts) {
             session.insert(fact);
         }
+        insertion.stop();
 
         // start deduction engine
-        long start = System.currentTimeMillis();
+        RunMetrics.Measurement deduction = metrics.start("deduction");
+        profiler.ifPresent(RuleProfiler::start);
         session.fireAllRules();
-        LOGGER.info("Deduction phase took {}ms", System.currentTimeMillis() - start);
+        LOGGER.info("Deduction phase took {}ms", deduction.stop());
 
         // collect results
         result = new ArrayList<>(session.getObjects());
@@ -117,21 +155,131 @@ public class Drools {
     }
 
     /**
-     * reset the idMap
+     * Returns the rule base with all rule groups used for deduction compiled in.
+     *
+     * @return the rule base
      */
-    public static void resetIdMap() {
-        ID_MAP.clear();
+    static KieBase getKieBase() {
+        return getKieBase(List.of(RULE_GROUPS));
     }
 
     /**
-     * Returns a sequential id which is unique to the specified data.
+     * Returns a rule base with the specified rule groups compiled in.
      *
-     * Equal input data always results in the same id.
+     * Compiling rules is by far the most expensive part of a deduction on small inputs, so the rule base
+     * is loaded from the copy precompiled at build time whenever the rule files were not changed since,
+     * and in any case it is cached for the lifetime of the JVM: subsequent calls only pay for the creation
+     * of new sessions.
      *
-     * @param objects objects to generate this id from
-     * @return a new id
+     * @param ruleGroups rule groups corresponding to filenames in the rules package
+     * @return the rule base
      */
-    public static int generateId(Object... objects) {
-        return ID_MAP.computeIfAbsent(Arrays.asList(objects), k -> ID_MAP.size());
+    static KieBase getKieBase(List<String> ruleGroups) {
+        return KIE_BASES.computeIfAbsent(ruleGroups,
+                groups -> loadPrecompiledKieBase(groups).orElseGet(() -> compileKieBase(groups)));
+    }
+
+    /**
+     * Compiles the default rule groups and writes the resulting rule base to a stream, so that it can
+     * be loaded at startup instead of compiling rules again.
+     *
+     * @param stream the stream to write to
+     * @throws IOException if the stream cannot be written
+     */
+    static void writePrecompiledKieBase(OutputStream stream) throws IOException {
+        List<String> ruleGroups = List.of(RULE_GROUPS);
+        KieBase kieBase = compileKieBase(ruleGroups);
+
+        try (ObjectOutputStream out = new DroolsObjectOutputStream(new GZIPOutputStream(stream))) {
+            out.writeObject(new ArrayList<>(ruleGroups));
+            out.writeUTF(getRulesDigest(ruleGroups));
+            out.writeObject(kieBase);
+        }
+    }
+
+    private static Optional<KieBase> loadPrecompiledKieBase(List<String> ruleGroups) {
+        InputStream stream = Drools.class.getClassLoader().getResourceAsStream(PRECOMPILED_RULE_BASE);
+        if (stream == null) {
+            LOGGER.debug("No precompiled rule base available");
+            return Optional.empty();
+        }
+
+        long start = System.currentTimeMillis();
+        try (ObjectInputStream in = new DroolsObjectInputStream(new GZIPInputStream(stream), Drools.class.getClassLoader())) {
+            // only use the precompiled copy if it was built from the very same rule files
+            if (!ruleGroups.equals(in.readObject()) || !getRulesDigest(ruleGroups).equals(in.readUTF())) {
+                LOGGER.info("Rule files differ from the precompiled rule base, compiling them from source");
+                return Optional.empty();
+            }
+
+            KieBase kieBase = (KieBase) in.readObject();
+            LOGGER.info("Loading precompiled rules took {}ms", System.currentTimeMillis() - start);
+            return Optional.of(kieBase);
+        }
+        catch (IOException | ClassNotFoundException | ClassCastException ex) {
+            LOGGER.warn("Unable to load the precompiled rule base, compiling rules from source: {}", ex.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private static KieBase compileKieBase(List<String> ruleGroups) {
+        long start = System.currentTimeMillis();
+
+        // setup engine
+        KieServices services = KieServices.Factory.get();
+        KieModuleModel module = services.newKieModuleModel();
+
+        // two facts are equal if equals() returns true (do not rely on ==)
+        KieBaseModel base = module.newKieBaseModel("rules")
+            .addPackage("com.suse.matcher.rules.drools")
+            .setEqualsBehavior(EqualityBehaviorOption.EQUALITY);
+        base.newKieSessionModel("session").setDefault(true);
+
+        // add rule files to engine
+        KieFileSystem kfs = services.newKieFileSystem();
+        for (String ruleGroup : ruleGroups) {
+            kfs.write(services.getResources().newClassPathResource(getRuleFile(ruleGroup)));
+        }
+        kfs.writeKModuleXML(module.toXML());
+
+        // every set of rule groups gets its own module in the repository, so they do not replace each other
+        ReleaseId releaseId = services.newReleaseId("com.suse", "subscription-matcher-rules",
+                "1.0." + Integer.toHexString(ruleGroups.hashCode()));
+        kfs.generateAndWritePomXML(releaseId);
+
+        KieBuilder builder = services.newKieBuilder(kfs).buildAll();
+        if (builder.getResults().hasMessages(Level.ERROR)) {
+            throw new IllegalStateException("Unable to compile rules: " + builder.getResults().getMessages(Level.ERROR));
+        }
+
+        KieBase kieBase = services.newKieContainer(releaseId).getKieBase("rules");
+        LOGGER.info("Rule compilation took {}ms", System.currentTimeMillis() - start);
+        return kieBase;
+    }
+
+    /**
+     * Returns a digest of the content of the rule files in the specified groups, used to detect changes.
+     */
+    private static String getRulesDigest(List<String> ruleGroups) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String ruleGroup : ruleGroups) {
+                try (InputStream stream = Drools.class.getClassLoader().getResourceAsStream(getRuleFile(ruleGroup))) {
+                    if (stream == null) {
+                        throw new IOException("Rule file not found: " + getRuleFile(ruleGroup));
+                    }
+                    digest.update(ruleGroup.getBytes(StandardCharsets.UTF_8));
+                    digest.update(stream.readAllBytes());
+                }
+            }
+            return String.format("%064x", new BigInteger(1, digest.digest()));
+        }
+        catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    private static String getRuleFile(String ruleGroup) {
+        return "com/suse/matcher/rules/drools/" + ruleGroup + ".drl";
     }
 }
@@ -21,14 +21,15 @@ import com.suse.matcher.json.JsonSubscription;
 import com.suse.matcher.json.JsonSystem;
 import com.suse.matcher.json.JsonVirtualizationGroup;
 import com.suse.matcher.solver.Assignment;
+import com.suse.matcher.util.IdGenerator;
 
 import org.apache.commons.lang3.builder.CompareToBuilder;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -50,10 +51,11 @@ public class FactConverter {
      * Converts JSON objects to facts (inputs to the rule engine).
      *
      * @param input a JSON input data blob
+     * @param idGenerator generator of ids for the run the facts belong to
      * @return a collection of facts
      */
-    public static Collection<Object> convertToFacts(JsonInput input) {
-        Collection<Object> result = new LinkedList<>();
+    public static Collection<Object> convertToFacts(JsonInput input, IdGenerator idGenerator) {
+        Collection<Object> result = new ArrayList<>();
 
         result.add(new Timestamp(input.getTimestamp()));
 
@@ -70,7 +72,7 @@ public class FactConverter {
         for (JsonVirtualizationGroup group : input.getVirtualizationGroups()) {
             for (Long guestId : group.getVirtualGuestIds()) {
                 result.add(new VirtualizationGroupMember(
-                        Drools.generateId(group.getType(), group.getId()),
+                        idGenerator.generateId(group.getType(), group.getId()),
                         guestId));
             }
         }
@@ -0,0 +1,100 @@
+package com.suse.matcher;
+
+import com.suse.matcher.json.JsonInput;
+import com.suse.matcher.solver.Assignment;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+
+/**
+ * Matches systems to subscriptions repeatedly, as input data changes by small amounts.
+ *
+ * The latest input data and solution are retained between updates. Rules modify and retract facts
+ * while deducing and run in agenda group order, so deductions cannot be updated in place and are
+ * repeated on the updated input data: on typical inputs they take a fraction of the time spent solving.
+ * The CSP solver, instead, starts from the retained solution (see {@link Matcher#match(JsonInput, java.util.Collection)}):
+ * Matches confirmed in it stay confirmed as long as they still fit, so the construction heuristic only places
+ * the other ones, and local search is scaled with their number rather than with all Matches.
+ *
+ * Deltas that only remove elements add no Matches, so local search is skipped for them: the construction
+ * heuristic places Matches that were not confirmed before, possibly using subscriptions that were freed.
+ *
+ * Instances are not thread-safe.
+ */
+public class IncrementalMatcher {
+
+    /** Logger instance. */
+    private static final Logger LOGGER = LogManager.getLogger(IncrementalMatcher.class);
+
+    /** The matcher used for every update. */
+    private final Matcher matcher;
+
+    /** The latest input data. */
+    private JsonInput input;
+
+    /** The latest solution, along with artifacts of the run that computed it. */
+    private RunResult result;
+
+    /**
+     * Matches the initial input data.
+     *
+     * @param matcherIn the matcher to use for the initial match and for all updates
+     * @param inputIn the initial input data
+     */
+    public IncrementalMatcher(Matcher matcherIn, JsonInput inputIn) {
+        matcher = matcherIn;
+        input = inputIn;
+        result = matcher.run(input, List.of());
+    }
+
+    /**
+     * Changes input data and matches it again, starting from the latest solution.
+     *
+     * @param delta the changes to input data
+     * @return an object summarizing the match
+     */
+    public Assignment update(InputDelta delta) {
+        if (delta.isEmpty()) {
+            return result.getAssignment();
+        }
+
+        long start = System.currentTimeMillis();
+        JsonInput updatedInput = delta.applyTo(input);
+        Matcher updateMatcher = delta.addsElements() ? matcher : matcher.withoutLocalSearch();
+        RunResult updatedResult = updateMatcher.run(updatedInput, FactConverter.getMatches(result.getAssignment()));
+
+        input = updatedInput;
+        result = updatedResult;
+        LOGGER.info("Incremental update took {}ms", System.currentTimeMillis() - start);
+        return result.getAssignment();
+    }
+
+    /**
+     * Gets the latest input data.
+     *
+     * @return the input data, with all updates applied
+     */
+    public JsonInput getInput() {
+        return input;
+    }
+
+    /**
+     * Gets the latest solution.
+     *
+     * @return an object summarizing the latest match
+     */
+    public Assignment getAssignment() {
+        return result.getAssignment();
+    }
+
+    /**
+     * Gets the result of the latest match, including its metrics and solver telemetry.
+     *
+     * @return the result of the latest match
+     */
+    public RunResult getResult() {
+        return result;
+    }
+}
@@ -0,0 +1,219 @@
+package com.suse.matcher;
+
+import com.suse.matcher.json.JsonInput;
+import com.suse.matcher.json.JsonMatch;
+import com.suse.matcher.json.JsonProduct;
+import com.suse.matcher.json.JsonSubscription;
+import com.suse.matcher.json.JsonSystem;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Changes to matcher input data, see {@link IncrementalMatcher}.
+ *
+ * Added elements replace any existing element with the same id (system and subscription ids for pinned
+ * matches), so changing an element (for example the installed products of a system) amounts to adding it again. References to removed elements, for example
+ * guest ids of a host, are not updated: referencing elements have to be changed as well.
+ */
+public class InputDelta {
+
+    /** New date and time of the match, if it changed. */
+    private Optional<Date> timestamp = Optional.empty();
+
+    /** Added or changed systems. */
+    private final List<JsonSystem> addedSystems = new ArrayList<>();
+
+    /** Ids of removed systems. */
+    private final Set<Long> removedSystemIds = new HashSet<>();
+
+    /** Added or changed products. */
+    private final List<JsonProduct> addedProducts = new ArrayList<>();
+
+    /** Ids of removed products. */
+    private final Set<Long> removedProductIds = new HashSet<>();
+
+    /** Added or changed subscriptions. */
+    private final List<JsonSubscription> addedSubscriptions = new ArrayList<>();
+
+    /** Ids of removed subscriptions. */
+    private final Set<Long> removedSubscriptionIds = new HashSet<>();
+
+    /** Added pinned matches. */
+    private final List<JsonMatch> addedPinnedMatches = new ArrayList<>();
+
+    /** System and subscription ids of removed pinned matches. */
+    private final Set<Pair<Long, Long>> removedPinnedMatches = new HashSet<>();
+
+    /**
+     * Changes the date and time of the match.
+     *
+     * @param timestampIn the new date and time
+     * @return this delta
+     */
+    public InputDelta setTimestamp(Date timestampIn) {
+        timestamp = Optional.of(timestampIn);
+        return this;
+    }
+
+    /**
+     * Adds a system, replacing any system with the same id.
+     *
+     * @param system the system
+     * @return this delta
+     */
+    public InputDelta addSystem(JsonSystem system) {
+        addedSystems.add(system);
+        return this;
+    }
+
+    /**
+     * Removes a system.
+     *
+     * @param systemId the system id
+     * @return this delta
+     */
+    public InputDelta removeSystem(long systemId) {
+        removedSystemIds.add(systemId);
+        return this;
+    }
+
+    /**
+     * Adds a product, replacing any product with the same id.
+     *
+     * @param product the product
+     * @return this delta
+     */
+    public InputDelta addProduct(JsonProduct product) {
+        addedProducts.add(product);
+        return this;
+    }
+
+    /**
+     * Removes a product.
+     *
+     * @param productId the product id
+     * @return this delta
+     */
+    public InputDelta removeProduct(long productId) {
+        removedProductIds.add(productId);
+        return this;
+    }
+
+    /**
+     * Adds a subscription, replacing any subscription with the same id.
+     *
+     * @param subscription the subscription
+     * @return this delta
+     */
+    public InputDelta addSubscription(JsonSubscription subscription) {
+        addedSubscriptions.add(subscription);
+        return this;
+    }
+
+    /**
+     * Removes a subscription.
+     *
+     * @param subscriptionId the subscription id
+     * @return this delta
+     */
+    public InputDelta removeSubscription(long subscriptionId) {
+        removedSubscriptionIds.add(subscriptionId);
+        return this;
+    }
+
+    /**
+     * Adds a pinned match, replacing any pinned match of the same system and subscription.
+     *
+     * @param pinnedMatch the pinned match
+     * @return this delta
+     */
+    public InputDelta addPinnedMatch(JsonMatch pinnedMatch) {
+        addedPinnedMatches.add(pinnedMatch);
+        return this;
+    }
+
+    /**
+     * Removes a pinned match.
+     *
+     * @param systemId the system id
+     * @param subscriptionId the subscription id
+     * @return this delta
+     */
+    public InputDelta removePinnedMatch(long systemId, long subscriptionId) {
+        removedPinnedMatches.add(Pair.of(systemId, subscriptionId));
+        return this;
+    }
+
+    /**
+     * Returns input data with this delta applied. The original input data is not changed.
+     *
+     * @param input the input data
+     * @return the changed input data
+     */
+    public JsonInput applyTo(JsonInput input) {
+        Function<JsonMatch, Pair<Long, Long>> pinnedMatchKey = m -> Pair.of(m.getSystemId(), m.getSubscriptionId());
+        return new JsonInput(
+            timestamp.orElse(input.getTimestamp()),
+            apply(input.getSystems(), JsonSystem::getId, removedSystemIds, addedSystems),
+            input.getVirtualizationGroups(),
+            apply(input.getProducts(), JsonProduct::getId, removedProductIds, addedProducts),
+            apply(input.getSubscriptions(), JsonSubscription::getId, removedSubscriptionIds, addedSubscriptions),
+            apply(input.getPinnedMatches(), pinnedMatchKey, removedPinnedMatches, addedPinnedMatches)
+        );
+    }
+
+    /**
+     * Returns true if this delta adds or changes any element, or the date and time of the match.
+     * Otherwise it only removes elements, so it cannot add Matches.
+     *
+     * @return true if anything is added or changed
+     */
+    public boolean addsElements() {
+        return timestamp.isPresent() || !addedSystems.isEmpty() || !addedProducts.isEmpty() ||
+            !addedSubscriptions.isEmpty() || !addedPinnedMatches.isEmpty();
+    }
+
+    /**
+     * Returns true if this delta does not change anything.
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        return timestamp.isEmpty() && addedSystems.isEmpty() && removedSystemIds.isEmpty() &&
+            addedProducts.isEmpty() && removedProductIds.isEmpty() &&
+            addedSubscriptions.isEmpty() && removedSubscriptionIds.isEmpty() &&
+            addedPinnedMatches.isEmpty() && removedPinnedMatches.isEmpty();
+    }
+
+    /**
+     * Removes and replaces elements of a list by id, keeping the original order of the others.
+     */
+    private static <T, K> List<T> apply(List<T> elements, Function<T, K> id, Set<K> removedIds, List<T> added) {
+        Map<K, T> addedById = added.stream()
+            .collect(Collectors.toMap(id, e -> e, (e1, e2) -> e2, LinkedHashMap::new));
+
+        List<T> result = new ArrayList<>(elements.size() + added.size());
+        for (T element : elements) {
+            K elementId = id.apply(element);
+            if (addedById.containsKey(elementId)) {
+                result.add(addedById.remove(elementId));
+            }
+            else if (!removedIds.contains(elementId)) {
+                result.add(element);
+            }
+        }
+        result.addAll(addedById.values());
+        return result;
+    }
+}
@@ -0,0 +1,390 @@
+package com.suse.matcher;
+
+import com.suse.matcher.facts.HostGuest;
+import com.suse.matcher.facts.InstalledProduct;
+import com.suse.matcher.facts.PinnedMatch;
+import com.suse.matcher.facts.Product;
+import com.suse.matcher.facts.Subscription;
+import com.suse.matcher.facts.SubscriptionProduct;
+import com.suse.matcher.facts.System;
+import com.suse.matcher.facts.Timestamp;
+import com.suse.matcher.facts.VirtualizationGroupMember;
+import com.suse.matcher.util.IdGenerator;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Converts input JSON to facts (inputs to the rule engine) directly from its token stream.
+ *
+ * This produces the same facts, in the same order, as loading a {@link com.suse.matcher.json.JsonInput}
+ * and converting it via {@link FactConverter#convertToFacts}, but without building the intermediate
+ * JSON object graph.
+ */
+class JsonFactReader {
+
+    /** Adapter to read dates in the same format as any other JSON date. */
+    private final TypeAdapter<Date> dateAdapter;
+
+    /** Generator of ids for the run the facts belong to. */
+    private final IdGenerator idGenerator;
+
+    // facts by input section, concatenated in a fixed order independently of the order of JSON keys
+    private Timestamp timestamp;
+    private final List<Object> systemFacts = new ArrayList<>();
+    private final List<Object> virtualizationGroupFacts = new ArrayList<>();
+    private final List<Object> productFacts = new ArrayList<>();
+    private final List<Object> subscriptionFacts = new ArrayList<>();
+    private final List<Object> pinnedMatchFacts = new ArrayList<>();
+
+    /**
+     * Standard constructor.
+     *
+     * @param dateAdapterIn adapter to read dates with
+     * @param idGeneratorIn generator of ids for the run the facts belong to
+     */
+    JsonFactReader(TypeAdapter<Date> dateAdapterIn, IdGenerator idGeneratorIn) {
+        dateAdapter = dateAdapterIn;
+        idGenerator = idGeneratorIn;
+    }
+
+    /**
+     * Reads facts from input JSON.
+     *
+     * @param reader the reader to read JSON from, until its end
+     * @return a collection of facts
+     * @throws JsonIOException in case the reader cannot be read correctly
+     * @throws JsonSyntaxException in case JSON does not have correct syntax
+     */
+    Collection<Object> read(Reader reader) {
+        try {
+            // be as lenient as Gson is when loading JSON objects
+            JsonReader in = new JsonReader(reader);
+            in.setLenient(true);
+            readInput(in);
+            if (in.peek() != JsonToken.END_DOCUMENT) {
+                throw new JsonSyntaxException("Unexpected content after the end of input");
+            }
+        }
+        catch (EOFException | MalformedJsonException | IllegalStateException | NumberFormatException ex) {
+            throw new JsonSyntaxException(ex);
+        }
+        catch (IOException ex) {
+            throw new JsonIOException(ex);
+        }
+
+        List<Object> result = new ArrayList<>(1 + systemFacts.size() + virtualizationGroupFacts.size() +
+                productFacts.size() + subscriptionFacts.size() + pinnedMatchFacts.size());
+        result.add(timestamp == null ? new Timestamp(null) : timestamp);
+        result.addAll(systemFacts);
+        result.addAll(virtualizationGroupFacts);
+        result.addAll(productFacts);
+        result.addAll(subscriptionFacts);
+        result.addAll(pinnedMatchFacts);
+        return result;
+    }
+
+    private void readInput(JsonReader in) throws IOException {
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "timestamp":
+                    timestamp = new Timestamp(dateAdapter.read(in));
+                    break;
+                case "systems":
+                    readArray(in, this::readSystem);
+                    break;
+                case "virtualization_groups":
+                    readArray(in, this::readVirtualizationGroup);
+                    break;
+                case "products":
+                    readArray(in, this::readProduct);
+                    break;
+                case "subscriptions":
+                    readArray(in, this::readSubscription);
+                    break;
+                case "pinned_matches":
+                    readArray(in, this::readPinnedMatch);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+    }
+
+    private void readSystem(JsonReader in) throws IOException {
+        Long id = null;
+        String name = null;
+        Integer cpus = null;
+        Boolean physical = null;
+        Set<Long> virtualSystemIds = Set.of();
+        Set<Long> productIds = Set.of();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id":
+                    id = readLong(in);
+                    break;
+                case "name":
+                    name = readString(in);
+                    break;
+                case "cpus":
+                    cpus = readInteger(in);
+                    break;
+                case "physical":
+                    physical = readBoolean(in);
+                    break;
+                case "virtual_system_ids":
+                    virtualSystemIds = readIds(in);
+                    break;
+                case "product_ids":
+                    productIds = readIds(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        systemFacts.add(new System(id, name, cpus, physical));
+        for (Long guestId : virtualSystemIds) {
+            systemFacts.add(new HostGuest(id, guestId));
+        }
+        for (Long productId : productIds) {
+            systemFacts.add(new InstalledProduct(id, productId));
+        }
+    }
+
+    private void readVirtualizationGroup(JsonReader in) throws IOException {
+        Long id = null;
+        String type = null;
+        Set<Long> virtualGuestIds = Set.of();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id":
+                    id = readLong(in);
+                    break;
+                case "type":
+                    type = readString(in);
+                    break;
+                case "virtual_guest_ids":
+                    virtualGuestIds = readIds(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        for (Long guestId : virtualGuestIds) {
+            virtualizationGroupFacts.add(new VirtualizationGroupMember(idGenerator.generateId(type, id), guestId));
+        }
+    }
+
+    private void readProduct(JsonReader in) throws IOException {
+        Long id = null;
+        String name = null;
+        String productClass = null;
+        Boolean free = null;
+        Boolean base = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id":
+                    id = readLong(in);
+                    break;
+                case "name":
+                    name = readString(in);
+                    break;
+                case "product_class":
+                    productClass = readString(in);
+                    break;
+                case "free":
+                    free = readBoolean(in);
+                    break;
+                case "base":
+                    base = readBoolean(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        productFacts.add(new Product(id, name, productClass, free, base));
+    }
+
+    private void readSubscription(JsonReader in) throws IOException {
+        Long id = null;
+        String partNumber = null;
+        String name = null;
+        Integer quantity = null;
+        Date startDate = null;
+        Date endDate = null;
+        String sccUsername = null;
+        Set<Long> productIds = Set.of();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id":
+                    id = readLong(in);
+                    break;
+                case "part_number":
+                    partNumber = readString(in);
+                    break;
+                case "name":
+                    name = readString(in);
+                    break;
+                case "quantity":
+                    quantity = readInteger(in);
+                    break;
+                case "start_date":
+                    startDate = dateAdapter.read(in);
+                    break;
+                case "end_date":
+                    endDate = dateAdapter.read(in);
+                    break;
+                case "scc_username":
+                    sccUsername = readString(in);
+                    break;
+                case "product_ids":
+                    productIds = readIds(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        subscriptionFacts.add(new Subscription(id, partNumber, name, quantity, startDate, endDate, sccUsername));
+        for (Long productId : productIds) {
+            subscriptionFacts.add(new SubscriptionProduct(id, productId));
+        }
+    }
+
+    private void readPinnedMatch(JsonReader in) throws IOException {
+        Long systemId = null;
+        Long subscriptionId = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "system_id":
+                    systemId = readLong(in);
+                    break;
+                case "subscription_id":
+                    subscriptionId = readLong(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        pinnedMatchFacts.add(new PinnedMatch(systemId, subscriptionId));
+    }
+
+    /**
+     * Reads an array of ids. Like any other JSON set, duplicates are discarded and order is kept.
+     */
+    private static Set<Long> readIds(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return Set.of();
+        }
+
+        Set<Long> result = new LinkedHashSet<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            result.add(readLong(in));
+        }
+        in.endArray();
+        return result;
+    }
+
+    private static void readArray(JsonReader in, ElementReader elementReader) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return;
+        }
+
+        in.beginArray();
+        while (in.hasNext()) {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+            }
+            else {
+                elementReader.read(in);
+            }
+        }
+        in.endArray();
+    }
+
+    private static Long readLong(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextLong();
+    }
+
+    private static Integer readInteger(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextInt();
+    }
+
+    private static Boolean readBoolean(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        if (token == JsonToken.STRING) {
+            return Boolean.parseBoolean(in.nextString());
+        }
+        return in.nextBoolean();
+    }
+
+    private static String readString(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        if (token == JsonToken.BOOLEAN) {
+            return Boolean.toString(in.nextBoolean());
+        }
+        return in.nextString();
+    }
+
+    /**
+     * Reads one element of a JSON array.
+     */
+    @FunctionalInterface
+    private interface ElementReader {
+        void read(JsonReader in) throws IOException;
+    }
+}
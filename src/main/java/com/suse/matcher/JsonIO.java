@@ -2,6 +2,7 @@ package com.suse.matcher;
 
 import com.suse.matcher.json.JsonInput;
 import com.suse.matcher.json.JsonOutput;
+import com.suse.matcher.util.IdGenerator;
 
 import com.google.gson.FieldNamingPolicy;
 import com.google.gson.Gson;
@@ -10,6 +11,10 @@ import com.google.gson.JsonIOException;
 import com.google.gson.JsonSyntaxException;
 import com.google.gson.reflect.TypeToken;
 
+import java.io.Reader;
+import java.util.Collection;
+import java.util.Date;
+
 /**
  * Serializes and deserializes objects from and to JSON.
  */
@@ -38,6 +43,36 @@ public class JsonIO {
         return gson.fromJson(string, new TypeToken<JsonInput>() { }.getType());
     }
 
+    /**
+     * Load input JSON from a reader.
+     *
+     * Data is parsed while it is being read, so the raw JSON text is never held in memory as a whole.
+     *
+     * @param reader the reader
+     * @return the input data
+     * @throws JsonIOException in case the reader cannot be read correctly
+     * @throws JsonSyntaxException in case JSON does not have correct syntax
+     */
+    public JsonInput loadInput(Reader reader) {
+        return gson.fromJson(reader, new TypeToken<JsonInput>() { }.getType());
+    }
+
+    /**
+     * Load input JSON from a reader directly as facts (inputs to the rule engine).
+     *
+     * This is equivalent to loading input data and converting it via {@link FactConverter#convertToFacts},
+     * but facts are created as JSON is read, without allocating input data objects in between.
+     *
+     * @param reader the reader
+     * @param idGenerator generator of ids for the run the facts belong to
+     * @return a collection of facts
+     * @throws JsonIOException in case the reader cannot be read correctly
+     * @throws JsonSyntaxException in case JSON does not have correct syntax
+     */
+    public Collection<Object> loadFacts(Reader reader, IdGenerator idGenerator) {
+        return new JsonFactReader(gson.getAdapter(Date.class), idGenerator).read(reader);
+    }
+
     /**
      * Load output JSON from a string.
      *
@@ -1,7 +1,7 @@
 package com.suse.matcher;
 
-import com.suse.matcher.json.JsonInput;
-import com.suse.matcher.solver.Assignment;
+import com.suse.matcher.json.JsonMatch;
+import com.suse.matcher.util.IdGenerator;
 
 import org.apache.commons.cli.BasicParser;
 import org.apache.commons.cli.CommandLine;
@@ -15,11 +15,15 @@ import org.apache.logging.log4j.core.LoggerContext;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Reader;
 import java.io.UncheckedIOException;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Properties;
 
 /**
  * Entry point for the command line version of this program.
@@ -32,8 +36,11 @@ public class Main {
      * @param args command line arguments
      */
     public static void main(String[] args) {
-        long start = System.currentTimeMillis();
-        CommandLine commandLine = parseCommandLine(args);
+        RunMetrics metrics = new RunMetrics();
+        metrics.begin();
+        Options opts = createOptions();
+        CommandLine commandLine = parseCommandLine(opts, args);
+        SolverOptions solverOptions = parseSolverOptions(opts, commandLine);
 
         // First initialize the logging system
         Optional<Level> logLevel = commandLine.hasOption('v') ?
@@ -49,30 +56,67 @@ public class Main {
                 Optional<Character> delimiter = commandLine.hasOption('d') ?
                     Optional.of(commandLine.getOptionValue('d').charAt(0)) :
                     Optional.empty();
+
+                Matcher matcher = new Matcher(false, solverOptions, commandLine.hasOption('g'));
+
+                // in server mode, keep serving requests until the process is terminated
+                if (commandLine.hasOption('s')) {
+                    int port = Integer.parseInt(commandLine.getOptionValue('s'));
+                    new MatcherServer(port, matcher, delimiter, logLevel).run();
+                    return;
+                }
+
                 Optional<String> outdir = Optional.ofNullable(commandLine.getOptionValue('o'));
                 OutputWriter writer = new OutputWriter(outdir, delimiter);
 
-                // load input data
-                String inputString = commandLine.hasOption('i') ?
-                    Files.readString(Path.of(commandLine.getOptionValue('i'))) :
-                    new String(System.in.readAllBytes(), Charset.defaultCharset());
+                // save a copy of input data in the output directory. Standard input can only be
+                // read once, so in that case data is loaded back from the copy
+                RunMetrics.Measurement inputCopy = metrics.start("inputCopy");
+                Path inputPath;
+                if (commandLine.hasOption('i')) {
+                    inputPath = Path.of(commandLine.getOptionValue('i'));
+                    writer.writeJsonInput(inputPath);
+                }
+                else {
+                    inputPath = writer.writeJsonInput(System.in);
+                }
+                inputCopy.stop();
+
+                // load input data, converting it to facts as it is read
+                IdGenerator idGenerator = new IdGenerator();
+                // facts are converted while JSON is parsed, so both are measured as one phase
+                RunMetrics.Measurement jsonParsing = metrics.start("jsonParsing");
+                Collection<Object> baseFacts;
+                try (Reader reader = Files.newBufferedReader(inputPath, StandardCharsets.UTF_8)) {
+                    baseFacts = new JsonIO().loadFacts(reader, idGenerator);
+                }
+                jsonParsing.stop();
 
-                // save a copy of input data in the output directory
-                writer.writeJsonInput(inputString);
+                // load confirmed matches of a previous run to start from, if any
+                List<JsonMatch> previousMatches = List.of();
+                if (commandLine.hasOption('w')) {
+                    RunMetrics.Measurement previousOutputParsing = metrics.start("previousOutputParsing");
+                    String previousOutput = Files.readString(Path.of(commandLine.getOptionValue('w')), StandardCharsets.UTF_8);
+                    previousMatches = new JsonIO().loadOutput(previousOutput).getMatches();
+                    previousOutputParsing.stop();
+                }
 
                 // do the matching
-                JsonInput input = new JsonIO().loadInput(inputString);
-                Assignment assignment = new Matcher(false).match(input);
+                RunResult result = matcher.run(baseFacts, idGenerator, previousMatches, metrics);
 
-                // write output data
-                writer.writeOutput(assignment, logLevel);
+                // write output data, including run metrics
+                writer.writeOutput(result, logLevel);
 
-                logger.info("Whole execution took {}ms", System.currentTimeMillis() - start);
+                logger.info("Whole execution took {}ms", metrics.getTimeMillis());
             }
             catch (IOException ex) {
                 logger.error("Unexpected I/O error", ex);
                 throw new UncheckedIOException(ex);
             }
+            catch (InterruptedException ex) {
+                logger.error("Interrupted while serving requests", ex);
+                Thread.currentThread().interrupt();
+            }
             catch (RuntimeException ex) {
                 logger.error("Unexpected error", ex);
                 throw ex;
@@ -80,8 +124,7 @@ public class Main {
         }
     }
 
-    private static CommandLine parseCommandLine(String[] args) {
-        CommandLine cmd = null;
+    private static Options createOptions() {
         Options opts = new Options();
         opts.addOption("h", "help", false, "show this help");
         opts.addOption("i", "input", true, "input.json file (Default: standard input)");
@@ -90,7 +133,40 @@ public class Main {
         opts.addOption("v", "log-level", true,
                 "Log level (Default: INFO, Possible values: OFF, FATAL, ERROR, WARN, INFO, DEBUG, TRACE, ALL)");
         opts.addOption("d", "delimiter", true, "CSV Delimiter (Default: ,)");
+        opts.addOption("s", "serve", true,
+                "Serve matching requests via HTTP on the given local port instead of matching once");
+        opts.addOption("r", "profile", true,
+                "Solver profile, other solver options override its settings (Default: balanced, Possible values: " +
+                "fast, balanced, thorough, or profiles given with -f)");
+        opts.addOption("f", "profiles-file", true, "Properties file with more solver profiles (Default: none)");
+        opts.addOption("c", "score-calculation", true,
+                "Score calculation (Default: DROOLS, Possible values: DROOLS, INCREMENTAL)");
+        opts.addOption("t", "move-threads", true,
+                "Threads evaluating moves in parallel (Default: NONE, Possible values: NONE, AUTO, a number)");
+        opts.addOption("p", "partition-threads", true,
+                "Split the problem in independent parts and solve them with the given number of threads " +
+                "(Default: do not split)");
+        opts.addOption("x", "exact-match-limit", true,
+                "Solve problems (or parts, see -p) with at most the given number of matches exactly " +
+                "(Default: 0, Maximum: " + SolverOptions.MAX_EXACT_MATCH_LIMIT + ")");
+        opts.addOption("k", "unimproved-steps", true,
+                "Stop searching after the given number of steps without improvement " +
+                "(Default: 10 per match, from " + SolverOptions.MIN_UNIMPROVED_STEP_COUNT_LIMIT +
+                " to " + SolverOptions.MAX_UNIMPROVED_STEP_COUNT_LIMIT + ")");
+        opts.addOption("b", "time-limit", true, "Stop searching after the given number of seconds (Default: 3600)");
+        opts.addOption("u", "unimproved-time-limit", true,
+                "Stop searching after the given number of seconds without improvement (Default: no limit)");
+        opts.addOption("w", "warm-start", true,
+                "output.json file of a previous run to start from (Default: start from scratch)");
+        opts.addOption("g", "rule-profile", false,
+                "Profile rules and write rule_profile.csv and agenda_group_profile.csv to the output directory");
+        opts.addOption("e", "solver-telemetry", false,
+                "Record solver telemetry and write solver_telemetry.json and solver_telemetry.prom to the output directory");
+        return opts;
+    }
 
+    private static CommandLine parseCommandLine(Options opts, String[] args) {
+        CommandLine cmd = null;
         CommandLineParser parser = new BasicParser();
         try {
             cmd = parser.parse(opts, args);
@@ -106,15 +182,95 @@ public class Main {
                 throw new ParseException("Given logging directory does not exist " +
                         "or is not a directory");
             }
+            if (cmd.hasOption('w') && ! new File(cmd.getOptionValue('w')).isFile()) {
+                throw new ParseException("Given previous output file does not exist " +
+                        "or is not a file");
+            }
+            if (cmd.hasOption('s') && (! cmd.getOptionValue('s').matches("\\d{1,5}") ||
+                    Integer.parseInt(cmd.getOptionValue('s')) > 65535)) {
+                throw new ParseException("Given port is not a valid port number");
+            }
         }
         catch (ParseException e) {
-            System.err.println("Failed to parse comand line properties:" + e);
-            help(opts);
-            System.exit(1);
+            fail(opts, e);
         }
         return cmd;
     }
 
+    private static SolverOptions parseSolverOptions(Options opts, CommandLine cmd) {
+        // start from a solver profile, then apply single options
+        SolverOptions solverOptions = new SolverOptions();
+        try {
+            if (cmd.hasOption('r') || cmd.hasOption('f')) {
+                try {
+                    Properties profiles = SolverOptions.loadProfiles(Optional.ofNullable(cmd.getOptionValue('f')).map(Path::of));
+                    solverOptions = SolverOptions.fromProfile(profiles, cmd.getOptionValue('r', SolverOptions.DEFAULT_PROFILE));
+                }
+                catch (IOException | IllegalArgumentException e) {
+                    throw new ParseException("Given solver profile is not valid: " + e.getMessage());
+                }
+            }
+            if (cmd.hasOption('c')) {
+                try {
+                    solverOptions.setScoreCalculation(SolverOptions.ScoreCalculation.parse(cmd.getOptionValue('c')));
+                }
+                catch (IllegalArgumentException e) {
+                    throw new ParseException("Given score calculation is not valid");
+                }
+            }
+            if (cmd.hasOption('t')) {
+                try {
+                    solverOptions.setMoveThreadCount(cmd.getOptionValue('t'));
+                }
+                catch (IllegalArgumentException e) {
+                    throw new ParseException("Given number of move threads is not valid");
+                }
+            }
+            if (cmd.hasOption('p')) {
+                if (! cmd.getOptionValue('p').matches("\\d{1,4}") || Integer.parseInt(cmd.getOptionValue('p')) == 0) {
+                    throw new ParseException("Given number of partition threads is not valid");
+                }
+                solverOptions.setPartitionThreadCount(Integer.parseInt(cmd.getOptionValue('p')));
+            }
+            if (cmd.hasOption('x')) {
+                if (! cmd.getOptionValue('x').matches("\\d{1,2}") ||
+                        Integer.parseInt(cmd.getOptionValue('x')) > SolverOptions.MAX_EXACT_MATCH_LIMIT) {
+                    throw new ParseException("Given exact match limit is not valid");
+                }
+                solverOptions.setExactMatchLimit(Integer.parseInt(cmd.getOptionValue('x')));
+            }
+            if (cmd.hasOption('k')) {
+                if (! cmd.getOptionValue('k').matches("\\d{1,6}") || Integer.parseInt(cmd.getOptionValue('k')) == 0) {
+                    throw new ParseException("Given number of unimproved steps is not valid");
+                }
+                solverOptions.setUnimprovedStepCountLimit(Integer.parseInt(cmd.getOptionValue('k')));
+            }
+            if (cmd.hasOption('b')) {
+                if (! cmd.getOptionValue('b').matches("\\d{1,9}") || Long.parseLong(cmd.getOptionValue('b')) == 0) {
+                    throw new ParseException("Given time limit is not valid");
+                }
+                solverOptions.setSecondsSpentLimit(Long.parseLong(cmd.getOptionValue('b')));
+            }
+            if (cmd.hasOption('u')) {
+                if (! cmd.getOptionValue('u').matches("\\d{1,9}") || Long.parseLong(cmd.getOptionValue('u')) == 0) {
+                    throw new ParseException("Given unimproved time limit is not valid");
+                }
+                solverOptions.setUnimprovedSecondsSpentLimit(Long.parseLong(cmd.getOptionValue('u')));
+            }
+            solverOptions.setTelemetry(cmd.hasOption('e'));
+        }
+        catch (ParseException e) {
+            fail(opts, e);
+        }
+        return solverOptions;
+    }
+
+    private static void fail(Options opts, ParseException e) {
+        System.err.println("Failed to parse comand line properties:" + e);
+        help(opts);
+        System.exit(1);
+    }
+
     private static void help(Options opts) {
         HelpFormatter formater = new HelpFormatter();
         formater.printHelp("subscription-matcher OPTIONS", opts);
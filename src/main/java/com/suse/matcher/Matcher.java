@@ -3,19 +3,35 @@ package com.suse.matcher;
 import com.suse.matcher.facts.InstalledProduct;
 import com.suse.matcher.facts.PotentialMatch;
 import com.suse.matcher.json.JsonInput;
+import com.suse.matcher.json.JsonMatch;
+import com.suse.matcher.json.JsonOutput;
 import com.suse.matcher.solver.Assignment;
+import com.suse.matcher.solver.AssignmentPartitioner;
+import com.suse.matcher.solver.ConflictGraph;
+import com.suse.matcher.solver.ExactSolver;
 import com.suse.matcher.solver.Match;
+import com.suse.matcher.solver.MatchScoreCalculator;
+import com.suse.matcher.util.IdGenerator;
 
+import org.apache.commons.lang3.tuple.Triple;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -30,13 +46,55 @@ public class Matcher {
     /** true if the matcher is being tested. */
     private final boolean testing;
 
+    /** Options for the CSP solver. */
+    private final SolverOptions solverOptions;
+
+    /** true if rules are profiled during deduction, see {@link RuleProfiler}. */
+    private final boolean ruleProfiling;
+
     /**
-     * Standard constructor.
+     * Standard constructor, using default solver options.
      *
      * @param testingIn true if running as a unit test, false otherwise
      */
     public Matcher(boolean testingIn) {
+        this(testingIn, new SolverOptions());
+    }
+
+    /**
+     * Constructor with solver options.
+     *
+     * @param testingIn true if running as a unit test, false otherwise
+     * @param solverOptionsIn options for the CSP solver
+     */
+    public Matcher(boolean testingIn, SolverOptions solverOptionsIn) {
+        this(testingIn, solverOptionsIn, false);
+    }
+
+    /**
+     * Constructor with solver options, optionally profiling rules. Rule profiles are part of the result
+     * of each run, see {@link #run(Collection, IdGenerator, Collection, RunMetrics)}.
+     *
+     * @param testingIn true if running as a unit test, false otherwise
+     * @param solverOptionsIn options for the CSP solver
+     * @param ruleProfilingIn true to profile rules during deduction, see {@link RuleProfiler}
+     */
+    public Matcher(boolean testingIn, SolverOptions solverOptionsIn, boolean ruleProfilingIn) {
         testing = testingIn;
+        solverOptions = solverOptionsIn;
+        ruleProfiling = ruleProfilingIn;
+    }
+
+    /**
+     * Returns a matcher with the same settings, except that it does not improve initial solutions
+     * with local search, see {@link SolverOptions#setLocalSearch(boolean)}.
+     *
+     * @return the matcher
+     */
+    Matcher withoutLocalSearch() {
+        SolverOptions options = new SolverOptions(solverOptions);
+        options.setLocalSearch(false);
+        return new Matcher(testing, options, ruleProfiling);
     }
 
     /**
@@ -46,23 +104,139 @@ public class Matcher {
      * @return an object summarizing the match
      */
     public Assignment match(JsonInput input) {
+        return match(input, List.of());
+    }
+
+    /**
+     * Matches a list of systems to a list of subscriptions, starting from the matches of a previous run.
+     *
+     * @param input a JSON input data blob
+     * @param previousMatches confirmed matches of a previous run on similar data, see {@link JsonOutput#getMatches}
+     * @return an object summarizing the match
+     */
+    public Assignment match(JsonInput input, Collection<JsonMatch> previousMatches) {
+        return run(input, previousMatches).getAssignment();
+    }
+
+    /**
+     * Matches a list of systems to a list of subscriptions, starting from the matches of a previous run,
+     * and returns the solution along with artifacts of the run.
+     *
+     * @param input a JSON input data blob
+     * @param previousMatches confirmed matches of a previous run on similar data, see {@link JsonOutput#getMatches}
+     * @return the solution and artifacts of the run
+     */
+    public RunResult run(JsonInput input, Collection<JsonMatch> previousMatches) {
+        // ids of deduced facts only need to be unique within this run
+        IdGenerator idGenerator = new IdGenerator();
+
         // convert inputs into facts the rule engine can reason about
-        Collection<Object> baseFacts = FactConverter.convertToFacts(input);
+        RunMetrics metrics = new RunMetrics();
+        RunMetrics.Measurement conversion = metrics.start("factConversion");
+        Collection<Object> baseFacts = FactConverter.convertToFacts(input, idGenerator);
+        conversion.stop();
+        return run(baseFacts, idGenerator, previousMatches, metrics);
+    }
 
+    /**
+     * Matches a list of systems to a list of subscriptions, already converted to facts.
+     *
+     * @param baseFacts facts converted from input data, see {@link FactConverter#convertToFacts}
+     * @param idGenerator the generator used to convert base facts, to be used for deduced facts as well
+     * @return an object summarizing the match
+     */
+    public Assignment match(Collection<Object> baseFacts, IdGenerator idGenerator) {
+        return match(baseFacts, idGenerator, List.of());
+    }
+
+    /**
+     * Matches a list of systems to a list of subscriptions, already converted to facts, starting from
+     * the matches of a previous run.
+     *
+     * Matches whose potential matches were all confirmed in the previous run are confirmed before
+     * solving, so that the CSP solver only has to place the other Matches, and scales local search
+     * with their number, starting close to the previous solution.
+     *
+     * @param baseFacts facts converted from input data, see {@link FactConverter#convertToFacts}
+     * @param idGenerator the generator used to convert base facts, to be used for deduced facts as well
+     * @param previousMatches confirmed matches of a previous run on similar data, see {@link JsonOutput#getMatches}
+     * @return an object summarizing the match
+     */
+    public Assignment match(Collection<Object> baseFacts, IdGenerator idGenerator, Collection<JsonMatch> previousMatches) {
+        return run(baseFacts, idGenerator, previousMatches, new RunMetrics()).getAssignment();
+    }
+
+    /**
+     * Matches a list of systems to a list of subscriptions, already converted to facts, starting from
+     * the matches of a previous run and recording metrics of each phase.
+     *
+     * Metrics are returned along with the solution, so that report writing can be recorded as well.
+     *
+     * @param baseFacts facts converted from input data, see {@link FactConverter#convertToFacts}
+     * @param idGenerator the generator used to convert base facts, to be used for deduced facts as well
+     * @param previousMatches confirmed matches of a previous run on similar data, see {@link JsonOutput#getMatches}
+     * @param metrics metrics of the run, possibly already recording input loading
+     * @return the solution and artifacts of the run
+     */
+    public RunResult run(Collection<Object> baseFacts, IdGenerator idGenerator, Collection<JsonMatch> previousMatches,
+            RunMetrics metrics) {
         // activate the rule engine to deduce more facts
-        Drools drools = new Drools(baseFacts);
+        Optional<RuleProfiler> ruleProfiler = ruleProfiling ? Optional.of(new RuleProfiler()) : Optional.empty();
+        Drools drools = new Drools(baseFacts, idGenerator, ruleProfiler, metrics);
         Collection<Object> deducedFacts = drools.getResult();
 
+        // activate the CSP solver with all deduced facts as inputs
+        Assignment unsolved = getProblem(deducedFacts, previousMatches, metrics);
+        List<SolverTelemetry> telemetries = Collections.synchronizedList(new ArrayList<>());
+        Assignment result = solverOptions.getPartitionThreadCount() > 0 ?
+                solvePartitioned(unsolved, telemetries, metrics) :
+                solve(unsolved, telemetries, metrics);
+
+        // add user messages taking rule engine deductions and CSP solver output into account
+        RunMetrics.Measurement messageCollection = metrics.start("messageCollection");
+        MessageCollector.addMessages(result);
+        messageCollection.stop();
+
+        metrics.count("baseFacts", baseFacts.size());
+        metrics.count("deducedFacts", deducedFacts.size());
+        metrics.count("matches", result.getMatches().size());
+        metrics.count("confirmedMatches", result.getMatches().stream().filter(m -> Boolean.TRUE.equals(m.confirmed)).count());
+
+        return new RunResult(result, metrics, ruleProfiler, telemetries);
+    }
+
+    /**
+     * Builds the problem to be solved by the CSP solver out of deduced facts.
+     *
+     * @param deducedFacts facts deduced by the rule engine
+     * @param previousMatches confirmed matches of a previous run to start from, possibly empty
+     * @return the unsolved problem
+     */
+    Assignment getProblem(Collection<Object> deducedFacts, Collection<JsonMatch> previousMatches) {
+        return getProblem(deducedFacts, previousMatches, new RunMetrics());
+    }
+
+    /**
+     * Builds the problem to be solved by the CSP solver out of deduced facts, recording the conflict
+     * map build phase.
+     *
+     * @param deducedFacts facts deduced by the rule engine
+     * @param previousMatches confirmed matches of a previous run to start from, possibly empty
+     * @param metrics metrics of the run
+     * @return the unsolved problem
+     */
+    Assignment getProblem(Collection<Object> deducedFacts, Collection<JsonMatch> previousMatches, RunMetrics metrics) {
         // among deductions, the rule engine determines system to subscription "matchability":
         // whether a subscription can be assigned to a system without taking other assignments into account.
-        // this is represented by Match objects, divide them from other facts
-        List<Match> matches = getMatches(deducedFacts);
+        // this is represented by PotentialMatch objects, grouped by Match objects. Divide them from other facts
+        List<PotentialMatch> potentialMatches = getPotentialMatches(deducedFacts).collect(Collectors.toList());
+        List<Match> matches = getMatches(potentialMatches);
 
         LOGGER.info("Found {} matches", matches.size());
         if (LOGGER.isTraceEnabled()) {
             matches.forEach(m -> {
                 LOGGER.trace(m.toString());
-                getPotentialMatches(deducedFacts)
+                potentialMatches.stream()
                     .filter(p -> p.groupId == m.id)
                     .sorted()
                     .map(o -> o.toString())
@@ -72,30 +246,149 @@ public class Matcher {
 
         // compute the map of conflicts between Matches
         // this is used by the CSP solver to avoid bad solutions
-        Map<Integer, List<List<Integer>>> conflictMap = getConflictMap(deducedFacts);
+        RunMetrics.Measurement conflictMap = metrics.start("conflictMap");
+        ConflictGraph conflictGraph = new ConflictGraph(getConflictMap(potentialMatches));
+        conflictMap.stop();
 
         // compute sorted potential matches for caching
-        List<PotentialMatch> sortedPotentialMatches = getPotentialMatches(deducedFacts).sorted().distinct().collect(Collectors.toList());
+        List<PotentialMatch> sortedPotentialMatches = potentialMatches.stream().sorted().distinct().collect(Collectors.toList());
 
-        // activate the CSP solver with all deduced facts as inputs
-        OptaPlanner optaPlanner = new OptaPlanner(
-                new Assignment(matches, deducedFacts, conflictMap, sortedPotentialMatches), testing);
-        Assignment result = optaPlanner.getResult();
+        Assignment assignment = new Assignment(matches, deducedFacts, conflictGraph, sortedPotentialMatches);
 
-        // add user messages taking rule engine deductions and CSP solver output into account
-        MessageCollector.addMessages(result);
+        // start from the previous solution, if any
+        if (!previousMatches.isEmpty()) {
+            warmStart(assignment, potentialMatches, previousMatches);
+        }
 
+        return assignment;
+    }
+
+    /**
+     * Solves a problem exactly if it is small enough, otherwise heuristically via OptaPlanner,
+     * collecting solver telemetry if it is enabled.
+     */
+    private Assignment solve(Assignment unsolved, List<SolverTelemetry> telemetries, RunMetrics metrics) {
+        if (unsolved.getMatches().isEmpty() || unsolved.getMatches().size() > solverOptions.getExactMatchLimit()) {
+            OptaPlanner optaPlanner = new OptaPlanner(unsolved, testing, solverOptions, metrics);
+            optaPlanner.getTelemetry().ifPresent(telemetries::add);
+            return optaPlanner.getResult();
+        }
+
+        RunMetrics.Measurement exactSearch = metrics.start("exactSearch");
+        Assignment result = new ExactSolver(unsolved).solve();
+        LOGGER.debug("Exact search of {} matches took {}ms", unsolved.getMatches().size(), exactSearch.stop());
         return result;
     }
 
+    /**
+     * Splits a problem in independent parts, solves them in parallel and merges the results.
+     */
+    private Assignment solvePartitioned(Assignment unsolved, List<SolverTelemetry> telemetries, RunMetrics metrics) {
+        List<Assignment> parts = AssignmentPartitioner.partition(unsolved);
+        LOGGER.info("Found {} independent parts, the largest has {} matches", parts.size(),
+                parts.stream().mapToInt(p -> p.getMatches().size()).max().orElse(0));
+        if (parts.size() == 1) {
+            return solve(unsolved, telemetries, metrics);
+        }
+        RunMetrics.Measurement partitionedOptimization = metrics.start("partitionedOptimization");
+
+        // start from the largest parts, so that the last ones to complete are quick
+        List<Assignment> schedule = parts.stream()
+            .sorted(Comparator.comparingInt((Assignment p) -> p.getMatches().size()).reversed())
+            .collect(Collectors.toList());
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(solverOptions.getPartitionThreadCount(), parts.size()));
+        try {
+            List<Future<Assignment>> futures = schedule.stream()
+                .map(part -> executor.submit(() -> solve(part, telemetries, metrics)))
+                .collect(Collectors.toList());
+
+            List<Assignment> solvedParts = new ArrayList<>(futures.size());
+            for (Future<Assignment> future : futures) {
+                solvedParts.add(future.get());
+            }
+
+            return AssignmentPartitioner.merge(unsolved, solvedParts);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while solving", ex);
+        }
+        catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException("Unexpected error while solving", ex.getCause());
+        }
+        finally {
+            executor.shutdownNow();
+            LOGGER.info("Partitioned optimization took {}ms", partitionedOptimization.stop());
+        }
+    }
+
+    /**
+     * Confirms Matches whose potential matches were all confirmed in a previous run, unless they
+     * conflict with Matches confirmed already or exceed a subscription.
+     *
+     * Input data might have changed since the previous run (e.g. lower subscription quantities or more
+     * CPUs), so subscription cents are counted by {@link MatchScoreCalculator} as Matches are confirmed,
+     * and Matches that would break the hard constraints are left for the construction heuristic. That
+     * keeps the hard score at 0, as if the construction heuristic had confirmed all Matches itself.
+     */
+    private void warmStart(Assignment assignment, List<PotentialMatch> potentialMatches,
+            Collection<JsonMatch> previousMatches) {
+        ConflictGraph conflictGraph = assignment.getConflictGraph();
+        MatchScoreCalculator calculator = new MatchScoreCalculator();
+        calculator.resetWorkingSolution(assignment);
+
+        Set<Triple<Long, Long, Long>> previousKeys = previousMatches.stream()
+            .map(m -> Triple.of(m.getSystemId(), m.getSubscriptionId(), m.getProductId()))
+            .collect(Collectors.toSet());
+
+        Set<Integer> unconfirmableIds = potentialMatches.stream()
+            .filter(p -> !previousKeys.contains(Triple.of(p.systemId, p.subscriptionId, p.productId)))
+            .map(p -> p.groupId)
+            .collect(Collectors.toSet());
+
+        Set<Integer> confirmedIds = new HashSet<>();
+        int exceedingCount = 0;
+        for (Match match : assignment.getMatches()) {
+            if (unconfirmableIds.contains(match.id)) {
+                continue;
+            }
+            boolean conflicting = false;
+            for (int i = 0; i < conflictGraph.getDegree(match.id) && !conflicting; i++) {
+                conflicting = confirmedIds.contains(conflictGraph.getConflictingId(match.id, i));
+            }
+            if (conflicting) {
+                continue;
+            }
+
+            calculator.beforeVariableChanged(match, "confirmed");
+            match.setConfirmed(true);
+            calculator.afterVariableChanged(match, "confirmed");
+            if (calculator.calculateScore().getHardScore() < 0) {
+                calculator.beforeVariableChanged(match, "confirmed");
+                match.setConfirmed(null);
+                calculator.afterVariableChanged(match, "confirmed");
+                exceedingCount++;
+            }
+            else {
+                confirmedIds.add(match.id);
+            }
+        }
+        LOGGER.info("Warm start confirmed {} matches of a previous run, {} more would exceed subscriptions",
+                confirmedIds.size(), exceedingCount);
+    }
+
     private Stream<PotentialMatch> getPotentialMatches(Collection<Object> deducedFacts) {
         return deducedFacts.stream()
                 .filter(f -> f instanceof PotentialMatch)
                 .map(o -> (PotentialMatch)o);
     }
 
-    private List<Match> getMatches(Collection<Object> deducedFacts) {
-        return getPotentialMatches(deducedFacts)
+    private List<Match> getMatches(List<PotentialMatch> potentialMatches) {
+        return potentialMatches.stream()
             .map(p -> p.groupId)
             .sorted()
             .distinct()
@@ -103,30 +396,34 @@ public class Matcher {
             .collect(Collectors.toList());
     }
 
-    private Map<Integer, List<List<Integer>>> getConflictMap(Collection<Object> deducedFacts) {
+    /**
+     * Computes conflicts between Matches, see {@link ConflictGraph}.
+     *
+     * @param potentialMatches all potential matches
+     * @return a map from every Match id to all conflict sets (sorted arrays of Match ids) in which it appears
+     */
+    static Map<Integer, List<int[]>> getConflictMap(List<PotentialMatch> potentialMatches) {
         // group ids in conflicting sets
         // "conflicting" means they target the same (system, product) couple
-        Map<InstalledProduct, Set<Integer>> conflicts = getPotentialMatches(deducedFacts).collect(
+        Map<InstalledProduct, Set<Integer>> conflicts = potentialMatches.stream().collect(
             Collectors.groupingBy(m -> new InstalledProduct(m.systemId, m.productId),
             Collectors.mapping(p -> p.groupId, Collectors.toCollection(TreeSet::new)))
         );
 
         // discard the above map keys, we only care about values (conflict sets)
         // also delete any duplicated set
-        // finally turn all sets to arrays, which are quicker to scan
-        List<List<Integer>> conflictList = conflicts.values().stream()
+        // finally turn all sets to sorted arrays, which are quicker to scan
+        // and build a map from each Match id to all of the conflict sets in which it is in,
+        // visiting every id of every set exactly once
+        Map<Integer, List<int[]>> conflictMap = new HashMap<>();
+        conflicts.values().stream()
             .distinct()
-            .map(s -> new ArrayList<>(s))
-            .collect(Collectors.toList());
-
-        // now build a map from each Match id
-        // to all of the conflict sets in which it is in
-        return getMatches(deducedFacts).stream()
-            .collect(Collectors.toMap(
-                    m -> m.id,
-                    m -> conflictList.stream()
-                       .filter(s -> Collections.binarySearch(s, m.id) >= 0)
-                       .collect(Collectors.toList())
-            ));
+            .map(s -> s.stream().mapToInt(Integer::intValue).toArray())
+            .forEach(s -> {
+                for (int id : s) {
+                    conflictMap.computeIfAbsent(id, k -> new ArrayList<>(1)).add(s);
+                }
+            });
+        return conflictMap;
     }
 }
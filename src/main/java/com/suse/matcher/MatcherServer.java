@@ -0,0 +1,248 @@
+package com.suse.matcher;
+
+import com.suse.matcher.util.IdGenerator;
+
+import com.google.gson.JsonParseException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long-running version of this program: keeps compiled rules and a warm JVM resident and
+ * serves matching requests over HTTP on the loopback interface.
+ *
+ * A POST to /match with an input.json payload as body responds with the corresponding output.json.
+ * If the output-directory query parameter is given, all output files (including CSV reports) are
+ * also written to that directory, as the command line version does.
+ *
+ * Requests are served one at a time, as each match already uses all the CPU it can get.
+ */
+public class MatcherServer {
+
+    /** Logger instance. */
+    private static final Logger LOGGER = LogManager.getLogger(MatcherServer.class);
+
+    /** Path of the matching endpoint. */
+    public static final String MATCH_PATH = "/match";
+
+    /** Query parameter to request output files to be written to a directory. */
+    private static final String OUTPUT_DIRECTORY_PARAMETER = "output-directory";
+
+    /** Seconds to wait for an in-flight request to complete when stopping. */
+    private static final int STOP_DELAY = 60;
+
+    /** The underlying HTTP server. */
+    private final HttpServer server;
+
+    /** Executor serving all requests. */
+    private final ExecutorService executor;
+
+    /** The matcher to use for all requests. */
+    private final Matcher matcher;
+
+    /** CSV delimiter for reports, if not the default one. */
+    private final Optional<Character> delimiter;
+
+    /** The logging level, used to decide whether to write all facts to the output directory. */
+    private final Optional<Level> logLevel;
+
+    /** Number of requests being served, see stop(). */
+    private final AtomicInteger requestsInProgress = new AtomicInteger();
+
+    /** Released when the server stops, see run(). */
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    /**
+     * Creates a server listening on a port of the loopback interface. Call start() to accept requests.
+     *
+     * @param port the port to listen on, 0 to pick any free port
+     * @param matcherIn the matcher to use for all requests
+     * @param delimiterIn an optional CSV delimiter. If empty, comma is used as default
+     * @param logLevelIn the logging level
+     * @throws IOException if the port cannot be bound
+     */
+    public MatcherServer(int port, Matcher matcherIn, Optional<Character> delimiterIn, Optional<Level> logLevelIn)
+            throws IOException {
+        matcher = matcherIn;
+        delimiter = delimiterIn;
+        logLevel = logLevelIn;
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext(MATCH_PATH, this::handleMatch);
+        executor = Executors.newSingleThreadExecutor();
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Returns the address this server is listening on.
+     *
+     * @return the address
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Loads the rule base and starts accepting requests.
+     */
+    public void start() {
+        // pay for rule loading upfront, so that the first request is as fast as the following ones
+        Drools.getKieBase();
+
+        server.start();
+        LOGGER.info("Listening on http://{}:{}{}", getAddress().getHostString(), getAddress().getPort(), MATCH_PATH);
+    }
+
+    /**
+     * Starts accepting requests and blocks until the JVM is shut down.
+     *
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public void run() throws InterruptedException {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::stop));
+        start();
+        stopped.await();
+    }
+
+    /**
+     * Stops accepting requests, waiting for the one being served (if any) to complete.
+     */
+    public void stop() {
+        LOGGER.info("Stopping server");
+        // stop accepting connections first, so that no exchange is handed to a shut down executor.
+        // HttpServer waits for the whole delay if no exchange is in progress, so only pass it if one is
+        server.stop(requestsInProgress.get() > 0 ? STOP_DELAY : 0);
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(STOP_DELAY, TimeUnit.SECONDS)) {
+                LOGGER.warn("Request still in progress after {}s, stopping anyway", STOP_DELAY);
+            }
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        stopped.countDown();
+    }
+
+    private void handleMatch(HttpExchange exchange) throws IOException {
+        requestsInProgress.incrementAndGet();
+        try {
+            serveMatch(exchange);
+        }
+        catch (IOException ex) {
+            LOGGER.error("Unexpected I/O error", ex);
+            throw ex;
+        }
+        catch (RuntimeException ex) {
+            LOGGER.error("Unexpected error", ex);
+            respond(exchange, 500, "Unexpected error: " + ex.getMessage());
+        }
+        finally {
+            exchange.close();
+            requestsInProgress.decrementAndGet();
+        }
+    }
+
+    private void serveMatch(HttpExchange exchange) throws IOException {
+        RunMetrics metrics = new RunMetrics();
+        metrics.begin();
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Allow", "POST");
+            respond(exchange, 405, "Only POST is supported");
+            return;
+        }
+
+        Optional<String> outputDirectory = getOutputDirectory(exchange);
+        if (outputDirectory.isPresent() && !Files.isDirectory(Path.of(outputDirectory.get()))) {
+            respond(exchange, 400, "Given output directory does not exist or is not a directory");
+            return;
+        }
+
+        // save a copy of input data in the output directory, if requested, and load it back
+        Optional<OutputWriter> writer = outputDirectory.map(directory -> new OutputWriter(outputDirectory, delimiter));
+        InputStream body = exchange.getRequestBody();
+        if (writer.isPresent()) {
+            RunMetrics.Measurement inputCopy = metrics.start("inputCopy");
+            body = Files.newInputStream(writer.get().writeJsonInput(body));
+            inputCopy.stop();
+        }
+
+        // load input data, converting it to facts as it is read
+        IdGenerator idGenerator = new IdGenerator();
+        RunMetrics.Measurement jsonParsing = metrics.start("jsonParsing");
+        Collection<Object> baseFacts;
+        try (Reader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            baseFacts = new JsonIO().loadFacts(reader, idGenerator);
+        }
+        catch (JsonParseException ex) {
+            respond(exchange, 400, "Invalid input: " + ex.getMessage());
+            return;
+        }
+        jsonParsing.stop();
+
+        // do the matching
+        RunResult result = matcher.run(baseFacts, idGenerator, List.of(), metrics);
+
+        // write output files, if requested
+        if (writer.isPresent()) {
+            writer.get().writeOutput(result, logLevel);
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        respond(exchange, 200, new JsonIO().toJson(FactConverter.convertToOutput(result.getAssignment())));
+        metrics.finish();
+        LOGGER.info("Request took {}ms", metrics.getTimeMillis());
+    }
+
+    private static Optional<String> getOutputDirectory(HttpExchange exchange) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return Optional.empty();
+        }
+
+        for (String parameter : query.split("&")) {
+            String[] pair = parameter.split("=", 2);
+            if (pair.length == 2 && OUTPUT_DIRECTORY_PARAMETER.equals(pair[0])) {
+                return Optional.of(URLDecoder.decode(pair[1], StandardCharsets.UTF_8));
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        if (status != 200) {
+            LOGGER.warn("Responding with status {}: {}", status, body);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        }
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream stream = exchange.getResponseBody()) {
+            stream.write(bytes);
+        }
+    }
+}
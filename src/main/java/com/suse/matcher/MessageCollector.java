@@ -47,6 +47,6 @@ public class MessageCollector {
                 messages.add(message);
             });
 
-        assignment.getProblemFacts().addAll(messages);
+        assignment.addProblemFacts(messages);
     }
 }
@@ -5,12 +5,13 @@ import com.suse.matcher.facts.Penalty;
 import com.suse.matcher.solver.Assignment;
 import com.suse.matcher.solver.Match;
 import com.suse.matcher.solver.MatchMoveIteratorFactory;
+import com.suse.matcher.solver.MatchScoreCalculator;
 import com.suse.matcher.solver.MatchSwapMoveIteratorFactory;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.optaplanner.core.api.solver.Solver;
-import org.optaplanner.core.api.solver.SolverFactory;
+import org.optaplanner.core.config.SolverConfigContext;
 import org.optaplanner.core.config.constructionheuristic.ConstructionHeuristicPhaseConfig;
 import org.optaplanner.core.config.constructionheuristic.placer.QueuedEntityPlacerConfig;
 import org.optaplanner.core.config.heuristic.selector.common.SelectionCacheType;
@@ -36,6 +37,7 @@ import org.optaplanner.core.impl.solver.DefaultSolver;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 /**
@@ -51,13 +53,29 @@ public class OptaPlanner {
     /** The result. */
     private final Assignment result;
 
+    /** Solver telemetry, if recorded. */
+    private Optional<SolverTelemetry> telemetry = Optional.empty();
+
     /**
      * Instantiates an OptaPlanner instance with the specified unsolved problem.
      *
      * @param unsolved the unsolved problem
      * @param testing true if running as a unit test, false otherwise
+     * @param options solver options
      */
-    public OptaPlanner(Assignment unsolved, boolean testing) {
+    public OptaPlanner(Assignment unsolved, boolean testing, SolverOptions options) {
+        this(unsolved, testing, options, new RunMetrics());
+    }
+
+    /**
+     * Instantiates an OptaPlanner instance with the specified unsolved problem, recording run metrics.
+     *
+     * @param unsolved the unsolved problem
+     * @param testing true if running as a unit test, false otherwise
+     * @param options solver options
+     * @param metrics metrics of the run, to record solver configuration and optimization phases
+     */
+    public OptaPlanner(Assignment unsolved, boolean testing, SolverOptions options, RunMetrics metrics) {
         // short circuit the planning in case there's nothing to optimize
         if (unsolved.getMatches().isEmpty()) {
             result = unsolved;
@@ -65,12 +83,31 @@ public class OptaPlanner {
         }
 
         // init solver
-        Solver<Assignment> solver = initSolver(testing);
+        // Matches confirmed by a warm start do not need to be placed, so search is scaled with the others
+        int openMatchCount = (int) unsolved.getMatches().stream().filter(m -> m.confirmed == null).count();
+        RunMetrics.Measurement configuration = metrics.start("solverConfiguration");
+        Solver<Assignment> solver = initSolver(testing, options, openMatchCount);
+        configuration.stop();
+        if (options.isTelemetry() && solver instanceof DefaultSolver) {
+            int part = unsolved.getMatches().stream().mapToInt(m -> m.id).min().getAsInt();
+            SolverTelemetry solverTelemetry = new SolverTelemetry(part, unsolved.getMatches().size(), options.getScoreCalculation());
+            ((DefaultSolver<Assignment>) solver).addPhaseLifecycleListener(solverTelemetry);
+            telemetry = Optional.of(solverTelemetry);
+        }
 
         // solve problem
-        long start = System.currentTimeMillis();
-        solver.solve(unsolved);
-        LOGGER.info("Optimization phase took {}ms", System.currentTimeMillis() - start);
+        RunMetrics.Measurement optimization = metrics.start("optimization");
+        try {
+            solver.solve(unsolved);
+        }
+        finally {
+            telemetry.ifPresent(SolverTelemetry::release);
+        }
+        LOGGER.info("Optimization phase took {}ms", optimization.stop());
+        if (solver instanceof DefaultSolver) {
+            LOGGER.info("Score calculation speed: {}/s ({})", ((DefaultSolver<Assignment>) solver).getSolverScope().getScoreCalculationSpeed(),
+                    options.getScoreCalculation());
+        }
         result = solver.getBestSolution();
         LOGGER.info("{} matches confirmed", result.getMatches().stream().filter(m -> m.confirmed).count());
 
@@ -116,11 +153,12 @@ public class OptaPlanner {
      *
      * @return the solver
      * @param testing true if running as a unit test, false otherwise
+     * @param options solver options
+     * @param matchCount number of matches to be placed, all of them unless the problem was warm started
      */
-    private Solver<Assignment> initSolver(boolean testing) {
+    private Solver<Assignment> initSolver(boolean testing, SolverOptions options, int matchCount) {
         // init basic objects
-        SolverFactory<Assignment> factory = SolverFactory.createEmpty();
-        SolverConfig config = factory.getSolverConfig();
+        SolverConfig config = new MatcherSolverConfig();
         config.setPhaseConfigList(new ArrayList<>());
 
         /*
@@ -128,7 +166,14 @@ public class OptaPlanner {
          */
         config.setEnvironmentMode(EnvironmentMode.REPRODUCIBLE);
         config.setRandomType(RandomType.MERSENNE_TWISTER);
-        config.setRandomSeed(0L);
+        config.setRandomSeed(options.getRandomSeed());
+
+        /*
+         * Optionally evaluate moves in parallel threads, each with its own copy of the working solution
+         * and score director. Steps are still taken in order, so results are reproducible for any fixed
+         * number of threads
+         */
+        config.setMoveThreadCount(options.getMoveThreadCount());
 
         /*
          * Declare solution and entity classes
@@ -137,11 +182,19 @@ public class OptaPlanner {
         config.setEntityClassList(List.of(Match.class));
 
         /*
-         * Declare score type and file location
+         * Declare score type and calculation: either rules in Scores.drl or the equivalent
+         * MatchScoreCalculator, which is faster as it updates scores incrementally
          */
         ScoreDirectorFactoryConfig score = new ScoreDirectorFactoryConfig();
         score.setScoreDefinitionType(ScoreDefinitionType.HARD_SOFT);
-        score.setScoreDrlList(List.of("com/suse/matcher/rules/optaplanner/Scores.drl"));
+        ScoreDirectorFactoryConfig droolsScore = new ScoreDirectorFactoryConfig();
+        droolsScore.setScoreDrlList(List.of("com/suse/matcher/rules/optaplanner/Scores.drl"));
+        if (options.getScoreCalculation() == SolverOptions.ScoreCalculation.INCREMENTAL) {
+            score.setIncrementalScoreCalculatorClass(MatchScoreCalculator.class);
+        }
+        else {
+            score.inherit(droolsScore);
+        }
         config.setScoreDirectorFactoryConfig(score);
 
         /*
@@ -197,13 +250,13 @@ public class OptaPlanner {
         move.setCacheType(SelectionCacheType.JUST_IN_TIME);
         move.setSelectionOrder(SelectionOrder.RANDOM);
         move.setMoveIteratorFactoryClass(MatchMoveIteratorFactory.class);
-        move.setSelectedCountLimit(10_000L);
+        move.setSelectedCountLimit(options.getSelectedCountLimit());
 
         MoveIteratorFactoryConfig swapMove = new MoveIteratorFactoryConfig();
         swapMove.setCacheType(SelectionCacheType.JUST_IN_TIME);
         swapMove.setSelectionOrder(SelectionOrder.RANDOM);
         swapMove.setMoveIteratorFactoryClass(MatchSwapMoveIteratorFactory.class);
-        swapMove.setSelectedCountLimit(10_000L);
+        swapMove.setSelectedCountLimit(options.getSelectedCountLimit());
 
         /*
          * Union move uses both of the above move implementations:
@@ -217,50 +270,93 @@ public class OptaPlanner {
 
         /*
          * Among generated moves, don't accept moves that were already attempted in the last
-         * 50 steps (colloquially called "taboo").
+         * 50 steps (by default, colloquially called "taboo").
          *
          * This prevents us to run in circles, repeating the same moves over and over (provided
          * the circle is shorter than 50 steps).
+         *
+         * Solver profiles can use other acceptors as well or instead: late acceptance only accepts
+         * moves that do not make the score worse than it was some steps ago, simulated annealing
+         * accepts worsening moves with a probability that decreases over time
          */
         AcceptorConfig acceptor = new AcceptorConfig();
-        acceptor.setMoveTabuSize(50);
+        if (options.getMoveTabuSize() > 0) {
+            acceptor.setMoveTabuSize(options.getMoveTabuSize());
+        }
+        if (options.getLateAcceptanceSize() > 0) {
+            acceptor.setLateAcceptanceSize(options.getLateAcceptanceSize());
+        }
+        options.getSimulatedAnnealingStartingTemperature().ifPresent(acceptor::setSimulatedAnnealingStartingTemperature);
+        if (options.isTelemetry()) {
+            // records which moves are accepted by the acceptors above, see SolverTelemetry
+            acceptor.setAcceptorClassList(List.of(SolverTelemetry.MoveAcceptor.class));
+        }
         search.setAcceptorConfig(acceptor);
 
         /*
-         * As accepted moves might still be a lot, don't evaluate more than 5_000 in any case.
+         * As accepted moves might still be a lot, don't evaluate more than 5_000 (by default) in any case.
          */
         LocalSearchForagerConfig forager = new LocalSearchForagerConfig();
-        forager.setAcceptedCountLimit(5_000);
+        forager.setAcceptedCountLimit(options.getAcceptedCountLimit());
         search.setForagerConfig(forager);
 
         /*
          * Continue stepping and keep track of the overall best solution found so far.
          *
          * At some point we have to stop stepping, and we do so when:
-         *   - we stepped 1000 times with no score improvement (typically)
-         *   - we stepped 15_000 times (when all else fails)
-         *   - we spent 1 hour finding the solution
+         *   - we stepped 1000 times with no score improvement (typically). Small problems
+         *     get to their best solution in fewer steps, so by default this is 10 steps per
+         *     Match to be placed, with a minimum of 100
+         *   - we stepped 15 times as much regardless of improvements (when all else fails)
+         *   - we spent 1 hour (by default) finding the solution
+         *   - optionally, we spent some seconds with no score improvement
          */
+        int unimprovedStepCountLimit = options.getUnimprovedStepCountLimit(matchCount);
         TerminationConfig termination = new TerminationConfig();
-        termination.setUnimprovedStepCountLimit(1000);
-        termination.setStepCountLimit(15_000);
-        termination.setHoursSpentLimit(1L);
+        termination.setUnimprovedStepCountLimit(unimprovedStepCountLimit);
+        termination.setStepCountLimit((int) Math.min(Integer.MAX_VALUE, unimprovedStepCountLimit * 15L));
+        termination.setSecondsSpentLimit(options.getSecondsSpentLimit());
+        if (options.getUnimprovedSecondsSpentLimit() > 0) {
+            termination.setUnimprovedSecondsSpentLimit(options.getUnimprovedSecondsSpentLimit());
+        }
         search.setTerminationConfig(termination);
 
         /*
          * Tweak parameters in unit tests, which deal with much less data and need
          * to run faster. These can only degrade results, so if a unit test passes
          * in test mode it will pass in production mode too.
-         * Also activate OptaPlanner full assertions to catch more issues.
+         * Also activate OptaPlanner full assertions to catch more issues, including
+         * any difference between incrementally calculated scores and Scores.drl.
          */
         if (testing) {
             termination.setUnimprovedStepCountLimit(12);
             config.setEnvironmentMode(EnvironmentMode.FULL_ASSERT);
+            if (options.getScoreCalculation() == SolverOptions.ScoreCalculation.INCREMENTAL) {
+                score.setAssertionScoreDirectorFactory(droolsScore);
+            }
+        }
+
+        // return solver, possibly without local search if only the initial solution is wanted
+        if (options.isLocalSearch()) {
+            config.getPhaseConfigList().add(search);
         }
+        return config.buildSolver(new SolverConfigContext());
+    }
 
-        // return solver
-        config.getPhaseConfigList().add(search);
-        return factory.buildSolver();
+    /**
+     * Solver configuration that accepts a number of move threads without evaluating it as a
+     * JavaScript expression, as no script engine is available in recent JVMs.
+     */
+    private static class MatcherSolverConfig extends SolverConfig {
+
+        /** {@inheritDoc} */
+        @Override
+        protected Integer resolveMoveThreadCount() {
+            if (moveThreadCount != null && moveThreadCount.matches("\\d+")) {
+                return Integer.valueOf(moveThreadCount);
+            }
+            return super.resolveMoveThreadCount();
+        }
     }
 
     /**
@@ -271,4 +367,13 @@ public class OptaPlanner {
     public Assignment getResult() {
         return result;
     }
+
+    /**
+     * Gets the solver telemetry.
+     *
+     * @return the telemetry, if enabled in solver options and the problem had to be solved
+     */
+    public Optional<SolverTelemetry> getTelemetry() {
+        return telemetry;
+    }
 }
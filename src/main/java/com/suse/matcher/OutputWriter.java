@@ -1,13 +1,13 @@
 package com.suse.matcher;
 
+import com.suse.matcher.csv.CSVOutputAgendaGroupProfile;
 import com.suse.matcher.csv.CSVOutputMessage;
+import com.suse.matcher.csv.CSVOutputRuleProfile;
 import com.suse.matcher.csv.CSVOutputSubscription;
 import com.suse.matcher.csv.CSVOutputUnmatchedProduct;
 import com.suse.matcher.facts.InstalledProduct;
 import com.suse.matcher.facts.Message;
-import com.suse.matcher.facts.Product;
 import com.suse.matcher.facts.Subscription;
-import com.suse.matcher.facts.System;
 import com.suse.matcher.facts.Timestamp;
 import com.suse.matcher.json.JsonMatch;
 import com.suse.matcher.solver.Assignment;
@@ -23,10 +23,13 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
-import java.nio.charset.Charset;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Date;
@@ -54,6 +57,11 @@ public class OutputWriter {
     private static final String CSV_SUBSCRIPTION_REPORT_FILE = "subscription_report.csv";
     private static final String CSV_UNMATCHED_PRODUCT_REPORT_FILE = "unmatched_product_report.csv";
     private static final String CSV_MESSAGE_REPORT_FILE = "message_report.csv";
+    private static final String CSV_RULE_PROFILE_FILE = "rule_profile.csv";
+    private static final String CSV_AGENDA_GROUP_PROFILE_FILE = "agenda_group_profile.csv";
+    private static final String JSON_SOLVER_TELEMETRY_FILE = "solver_telemetry.json";
+    private static final String PROMETHEUS_SOLVER_TELEMETRY_FILE = "solver_telemetry.prom";
+    private static final String JSON_METRICS_FILE = "metrics.json";
 
     /** The output directory. */
     private final String outputDirectory;
@@ -82,10 +90,41 @@ public class OutputWriter {
      * @throws IOException Signals that an I/O exception has occurred.
      */
     public void writeOutput(Assignment assignment, Optional<Level> logLevel) throws IOException {
+        writeOutput(assignment, logLevel, Optional.empty());
+    }
+
+    /**
+     * Write the output files to the specified directory, along with rule profiles, solver telemetry
+     * and run metrics, if any.
+     *
+     * @param result output from {@link Matcher#run}
+     * @param logLevel the logging level
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void writeOutput(RunResult result, Optional<Level> logLevel) throws IOException {
+        writeOutput(result.getAssignment(), logLevel, Optional.of(result.getMetrics()));
+        if (result.getRuleProfiler().isPresent()) {
+            writeCSVRuleProfile(result.getRuleProfiler().get());
+        }
+        if (!result.getTelemetries().isEmpty()) {
+            writeSolverTelemetry(result.getTelemetries());
+        }
+
+        // written last, to include all other output
+        writeMetrics(result.getMetrics());
+    }
+
+    private void writeOutput(Assignment assignment, Optional<Level> logLevel, Optional<RunMetrics> metrics)
+            throws IOException {
+        Optional<RunMetrics.Measurement> jsonWriting = metrics.map(m -> m.start("jsonWriting"));
         writeJsonOutput(assignment);
+        jsonWriting.ifPresent(RunMetrics.Measurement::stop);
+
+        Optional<RunMetrics.Measurement> csvWriting = metrics.map(m -> m.start("csvWriting"));
         writeCSVSubscriptionReport(assignment);
         writeCSVUnmatchedProductReport(assignment);
         writeCSVMessageReport(assignment);
+        csvWriting.ifPresent(RunMetrics.Measurement::stop);
 
         try {
             Files.deleteIfExists(Path.of(outputDirectory, JSON_OUTPUT_ALL_FILE));
@@ -108,13 +147,40 @@ public class OutputWriter {
     }
 
     /**
-     * Writes the raw input file in JSON format.
+     * Writes a copy of the raw input file in JSON format.
+     *
+     * The copy is delegated to the operating system, so the file content is never loaded in memory.
+     *
+     * @param inputFile the input file
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void writeJsonInput(Path inputFile) throws IOException {
+        Path target = Path.of(outputDirectory, JSON_INPUT_FILE);
+        if (Files.exists(target) && Files.isSameFile(inputFile, target)) {
+            return;
+        }
+
+        try (FileChannel source = FileChannel.open(inputFile, StandardOpenOption.READ);
+             FileChannel destination = FileChannel.open(target, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = source.size();
+            for (long position = 0; position < size; ) {
+                position += source.transferTo(position, size - position, destination);
+            }
+        }
+    }
+
+    /**
+     * Writes the raw input in JSON format as it is read from a stream.
      *
-     * @param input the input
+     * @param input the input stream, read until its end
+     * @return the path of the written file, to load input data from
      * @throws IOException Signals that an I/O exception has occurred.
      */
-    public void writeJsonInput(String input) throws IOException {
-        Files.writeString(Path.of(outputDirectory, JSON_INPUT_FILE), input, Charset.defaultCharset());
+    public Path writeJsonInput(InputStream input) throws IOException {
+        Path target = Path.of(outputDirectory, JSON_INPUT_FILE);
+        Files.copy(input, target, StandardCopyOption.REPLACE_EXISTING);
+        return target;
     }
 
     /**
@@ -203,12 +269,7 @@ public class OutputWriter {
     public void writeCSVUnmatchedProductReport(Assignment assignment) throws IOException {
         Collection<JsonMatch> confirmedMatchFacts = FactConverter.getMatches(assignment);
 
-        List<System> systems = assignment.getProblemFactStream(System.class)
-                .sorted(Comparator.comparing(a -> a.id))
-                .collect(Collectors.toList());
-
         Collection<InstalledProduct> installedProducts = assignment.getProblemFacts(InstalledProduct.class);
-        Collection<Product> products = assignment.getProblemFacts(Product.class);
 
         // prepare map from (system id, product id) to Match object
         Map<Pair<Long, Long>, JsonMatch> matchMap = new HashMap<>();
@@ -232,8 +293,8 @@ public class OutputWriter {
 
             List<CSVOutputUnmatchedProduct> unmatchedProductsCsvs = unmatchedProductSystems.entrySet().stream()
                     .map(e -> new CSVOutputUnmatchedProduct(
-                            productNameById(products, e.getKey()),
-                            e.getValue().stream().flatMap(sid -> systemById(systems, sid).stream()).collect(Collectors.toList())))
+                            productNameById(assignment, e.getKey()),
+                            e.getValue().stream().flatMap(sid -> assignment.getSystemById(sid).stream()).collect(Collectors.toList())))
                     .collect(Collectors.toList());
 
             // cant use java 8 forEach as printer throws a checked exception
@@ -244,17 +305,9 @@ public class OutputWriter {
         }
     }
 
-    private Optional<System> systemById(Collection<System> systems, Long systemId) {
-        return systems.stream()
-                .filter(s -> Objects.equals(systemId, s.getId()))
-                .findFirst();
-    }
-
-    private String productNameById(Collection<Product> products, Long productId) {
-        return products.stream()
-                .filter(p -> p.id.equals(productId))
+    private String productNameById(Assignment assignment, Long productId) {
+        return assignment.getProductById(productId)
                 .map(p -> p.name)
-                .findFirst()
                 .orElse("Unknown product (" + productId + ")");
     }
 
@@ -284,4 +337,59 @@ public class OutputWriter {
         }
     }
 
+    /**
+     * Writes the CSV profiles of rules and agenda groups, see {@link RuleProfiler}.
+     *
+     * @param ruleProfiler the profiler of a deduction
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeCSVRuleProfile(RuleProfiler ruleProfiler) throws IOException {
+        try (FileWriter writer = new FileWriter(new File(outputDirectory, CSV_RULE_PROFILE_FILE));
+                CSVPrinter printer = new CSVPrinter(writer, csvFormat.withHeader(CSVOutputRuleProfile.CSV_HEADER))) {
+            for (RuleProfiler.RuleStatistics statistics : ruleProfiler.getRuleStatistics()) {
+                printer.printRecord(new CSVOutputRuleProfile(statistics).getCSVRow());
+            }
+        }
+
+        try (FileWriter writer = new FileWriter(new File(outputDirectory, CSV_AGENDA_GROUP_PROFILE_FILE));
+                CSVPrinter printer = new CSVPrinter(writer, csvFormat.withHeader(CSVOutputAgendaGroupProfile.CSV_HEADER))) {
+            for (RuleProfiler.AgendaGroupStatistics statistics : ruleProfiler.getAgendaGroupStatistics()) {
+                printer.printRecord(new CSVOutputAgendaGroupProfile(statistics).getCSVRow());
+            }
+        }
+    }
+
+    /**
+     * Writes solver telemetry, see {@link SolverTelemetry}, both in JSON and in Prometheus text format.
+     *
+     * Parts are sorted by their smallest Match id, so that they appear in the same order in every run.
+     *
+     * @param telemetries telemetry of each solved part of the problem, in any order
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeSolverTelemetry(List<SolverTelemetry> telemetries) throws IOException {
+        List<SolverTelemetry> sorted = telemetries.stream()
+            .sorted(Comparator.comparingInt(SolverTelemetry::getPart))
+            .collect(Collectors.toList());
+        try (PrintWriter writer = new PrintWriter(new File(outputDirectory, JSON_SOLVER_TELEMETRY_FILE))) {
+            JsonIO io = new JsonIO();
+            writer.write(io.toJson(sorted));
+        }
+
+        Files.writeString(Path.of(outputDirectory, PROMETHEUS_SOLVER_TELEMETRY_FILE), SolverTelemetry.toPrometheusText(sorted));
+    }
+
+    /**
+     * Writes run metrics in JSON format, see {@link RunMetrics}, recording whole run time and peak heap usage first.
+     *
+     * @param metrics metrics of the run
+     * @throws FileNotFoundException if the output directory was not found
+     */
+    public void writeMetrics(RunMetrics metrics) throws FileNotFoundException {
+        metrics.finish();
+        try (PrintWriter writer = new PrintWriter(new File(outputDirectory, JSON_METRICS_FILE))) {
+            JsonIO io = new JsonIO();
+            writer.write(io.toJson(metrics));
+        }
+    }
 }
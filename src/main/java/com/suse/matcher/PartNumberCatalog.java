@@ -0,0 +1,155 @@
+package com.suse.matcher;
+
+import com.suse.matcher.facts.Subscription;
+import com.suse.matcher.facts.Subscription.Policy;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Known subscription part numbers and the data they imply on a {@link Subscription}
+ * (virtualization policy, support level, CPU sockets, stackability...).
+ *
+ * The catalog is loaded once from a CSV resource into a map keyed by part number.
+ */
+public class PartNumberCatalog {
+
+    /** Classpath location of the catalog. */
+    private static final String CATALOG_FILE = "com/suse/matcher/rules/PartNumbers.csv";
+
+    /** Value of the quantity multiplier column for subscriptions with no quantity limit. */
+    private static final String UNLIMITED = "unlimited";
+
+    /** Part number to catalog entry. */
+    private final Map<String, Entry> entries;
+
+    /** Lazily initialized instance, see getInstance(). */
+    private static class Holder {
+        private static final PartNumberCatalog INSTANCE = new PartNumberCatalog(CATALOG_FILE);
+    }
+
+    /**
+     * Returns the catalog of part numbers known by this program.
+     *
+     * @return the catalog
+     */
+    public static PartNumberCatalog getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Loads a catalog from a classpath CSV resource.
+     *
+     * @param resource the resource path
+     */
+    PartNumberCatalog(String resource) {
+        entries = new HashMap<>();
+
+        InputStream stream = PartNumberCatalog.class.getClassLoader().getResourceAsStream(resource);
+        if (stream == null) {
+            throw new IllegalStateException("Part number catalog not found: " + resource);
+        }
+
+        try (Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8);
+             CSVParser parser = CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(reader)) {
+            for (CSVRecord record : parser) {
+                Entry previous = entries.put(record.get("part_number"), new Entry(record));
+                if (previous != null) {
+                    throw new IllegalStateException("Duplicate part number in catalog: " + record.get("part_number"));
+                }
+            }
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException("Unable to load part number catalog " + resource, ex);
+        }
+    }
+
+    /**
+     * Fills in the data implied by the part number of a subscription, if known.
+     *
+     * @param subscription the subscription
+     * @return true if the part number was found in this catalog
+     */
+    public boolean apply(Subscription subscription) {
+        Entry entry = subscription.partNumber == null ? null : entries.get(subscription.partNumber);
+        if (entry == null) {
+            return false;
+        }
+
+        subscription.policy = entry.policy;
+        subscription.stackable = entry.stackable;
+        if (entry.supportLevel != null) {
+            subscription.supportLevel = entry.supportLevel;
+        }
+        if (entry.cpus != null) {
+            subscription.cpus = entry.cpus;
+        }
+        if (entry.singleSubscriptionHardBundle) {
+            subscription.singleSubscriptionHardBundle = true;
+        }
+        if (entry.unlimited) {
+            subscription.quantity = Integer.MAX_VALUE;
+        }
+        else if (entry.quantityMultiplier != null && subscription.quantity != null) {
+            subscription.quantity = subscription.quantity * entry.quantityMultiplier;
+        }
+        return true;
+    }
+
+    /**
+     * Data implied by one part number.
+     */
+    private static class Entry {
+
+        /** Virtualization policy. */
+        private final Policy policy;
+
+        /** Support level identifier, null if not set by the part number. */
+        private final String supportLevel;
+
+        /** Populated CPU sockets or IFLs, null if not set by the part number. */
+        private final Integer cpus;
+
+        /** Can this subscription be used multiple times on the same system? */
+        private final boolean stackable;
+
+        /** Does this subscription on its own represent a hard bundle? */
+        private final boolean singleSubscriptionHardBundle;
+
+        /** Units granted per purchased unit, null if quantity is taken as-is. */
+        private final Integer quantityMultiplier;
+
+        /** True if the subscription has no quantity limit. */
+        private final boolean unlimited;
+
+        Entry(CSVRecord record) {
+            policy = Policy.valueOf(record.get("policy"));
+            supportLevel = emptyToNull(record.get("support_level"));
+            cpus = parseInteger(record.get("cpus"));
+            stackable = Boolean.parseBoolean(record.get("stackable"));
+            singleSubscriptionHardBundle = Boolean.parseBoolean(record.get("single_subscription_hard_bundle"));
+
+            String multiplier = record.get("quantity_multiplier");
+            unlimited = UNLIMITED.equals(multiplier);
+            quantityMultiplier = unlimited ? null : parseInteger(multiplier);
+        }
+
+        private static String emptyToNull(String value) {
+            return value == null || value.isEmpty() ? null : value;
+        }
+
+        private static Integer parseInteger(String value) {
+            return value == null || value.isEmpty() ? null : Integer.valueOf(value);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.suse.matcher;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.LoggerContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Entry point used at build time to precompile the Drools rule base.
+ *
+ * The result is shipped in the jar and loaded by {@link Drools} at startup, which is much quicker
+ * than compiling all rule files from source.
+ */
+public class RuleBaseCompiler {
+
+    private RuleBaseCompiler() {
+        // Prevent instantiation
+    }
+
+    /**
+     * The main method.
+     *
+     * @param args the output directory, typically the build output directory of the project
+     */
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.err.println("Usage: RuleBaseCompiler OUTPUT_DIRECTORY");
+            System.exit(1);
+        }
+
+        LoggerContext context = Log4J.initialize(Optional.of(Level.WARN), Optional.empty());
+        try {
+            Path file = Path.of(args[0], Drools.PRECOMPILED_RULE_BASE);
+            Files.createDirectories(file.getParent());
+
+            try (OutputStream stream = Files.newOutputStream(file)) {
+                Drools.writePrecompiledKieBase(stream);
+            }
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        finally {
+            context.close();
+        }
+    }
+}
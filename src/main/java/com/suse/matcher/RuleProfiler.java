@@ -0,0 +1,352 @@
+package com.suse.matcher;
+
+import org.drools.core.definitions.rule.impl.RuleImpl;
+import org.kie.api.definition.rule.Rule;
+import org.kie.api.event.rule.AfterMatchFiredEvent;
+import org.kie.api.event.rule.AgendaEventListener;
+import org.kie.api.event.rule.AgendaGroupPoppedEvent;
+import org.kie.api.event.rule.AgendaGroupPushedEvent;
+import org.kie.api.event.rule.BeforeMatchFiredEvent;
+import org.kie.api.event.rule.MatchCancelledEvent;
+import org.kie.api.event.rule.MatchCreatedEvent;
+import org.kie.api.event.rule.ObjectDeletedEvent;
+import org.kie.api.event.rule.ObjectInsertedEvent;
+import org.kie.api.event.rule.ObjectUpdatedEvent;
+import org.kie.api.event.rule.RuleFlowGroupActivatedEvent;
+import org.kie.api.event.rule.RuleFlowGroupDeactivatedEvent;
+import org.kie.api.event.rule.RuleRuntimeEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Profiles a deduction, recording statistics of each rule and agenda group, see {@link Drools}.
+ *
+ * Consequence time is measured from the start to the end of each rule firing, so it does not include the
+ * time spent evaluating rule conditions: Drools does that lazily, when an agenda group gets the focus.
+ * Agenda group durations include both, and are measured from the start of deduction or the end of the
+ * previous agenda group. Every rule engine event adds some overhead, so profiling is only done on request.
+ *
+ * Once deduction is over, the profiler is returned along with the solution, see {@link RunResult}, so that
+ * {@link OutputWriter} can write it out.
+ */
+public class RuleProfiler implements AgendaEventListener, RuleRuntimeEventListener {
+
+    /** Statistics by rule name, in order of first activation. */
+    private final Map<String, RuleStatistics> rules = new LinkedHashMap<>();
+
+    /** Statistics by agenda group name, in order of execution. */
+    private final Map<String, AgendaGroupStatistics> agendaGroups = new LinkedHashMap<>();
+
+    /** Time the current agenda group started, in nanoseconds. */
+    private transient long agendaGroupStart;
+
+    /** Time the current rule started firing, in nanoseconds. */
+    private transient long fireStart;
+
+    /**
+     * Marks the start of deduction, to be called right before rules are fired.
+     */
+    public void start() {
+        agendaGroupStart = System.nanoTime();
+    }
+
+    /**
+     * Gets statistics of all rules that were activated, slowest first.
+     *
+     * @return the rule statistics
+     */
+    public List<RuleStatistics> getRuleStatistics() {
+        List<RuleStatistics> result = new ArrayList<>(rules.values());
+        result.sort(Comparator.comparingLong(RuleStatistics::getConsequenceNanos).reversed()
+            .thenComparing(RuleStatistics::getName));
+        return result;
+    }
+
+    /**
+     * Gets statistics of all agenda groups that fired rules or were completed, in order of execution.
+     *
+     * @return the agenda group statistics
+     */
+    public Collection<AgendaGroupStatistics> getAgendaGroupStatistics() {
+        return agendaGroups.values();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void matchCreated(MatchCreatedEvent event) {
+        getStatistics(event.getMatch().getRule()).created++;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void matchCancelled(MatchCancelledEvent event) {
+        getStatistics(event.getMatch().getRule()).cancelled++;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void beforeMatchFired(BeforeMatchFiredEvent event) {
+        fireStart = System.nanoTime();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void afterMatchFired(AfterMatchFiredEvent event) {
+        RuleStatistics statistics = getStatistics(event.getMatch().getRule());
+        statistics.fired++;
+        statistics.consequenceNanos += System.nanoTime() - fireStart;
+        getAgendaGroup(statistics.agendaGroup).fired++;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void agendaGroupPopped(AgendaGroupPoppedEvent event) {
+        long now = System.nanoTime();
+        getAgendaGroup(event.getAgendaGroup().getName()).nanos += now - agendaGroupStart;
+        agendaGroupStart = now;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void agendaGroupPushed(AgendaGroupPushedEvent event) {
+        // agenda groups get the focus before deduction starts, see agendaGroupPopped()
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void beforeRuleFlowGroupActivated(RuleFlowGroupActivatedEvent event) {
+        // rule flows are not used
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void afterRuleFlowGroupActivated(RuleFlowGroupActivatedEvent event) {
+        // rule flows are not used
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void beforeRuleFlowGroupDeactivated(RuleFlowGroupDeactivatedEvent event) {
+        // rule flows are not used
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void afterRuleFlowGroupDeactivated(RuleFlowGroupDeactivatedEvent event) {
+        // rule flows are not used
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void objectInserted(ObjectInsertedEvent event) {
+        // base facts are inserted outside of rules
+        if (event.getRule() != null) {
+            getStatistics(event.getRule()).inserted++;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void objectUpdated(ObjectUpdatedEvent event) {
+        if (event.getRule() != null) {
+            getStatistics(event.getRule()).updated++;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void objectDeleted(ObjectDeletedEvent event) {
+        if (event.getRule() != null) {
+            getStatistics(event.getRule()).deleted++;
+        }
+    }
+
+    private RuleStatistics getStatistics(Rule rule) {
+        return rules.computeIfAbsent(rule.getName(), name -> new RuleStatistics(name, ((RuleImpl) rule).getAgendaGroup()));
+    }
+
+    private AgendaGroupStatistics getAgendaGroup(String name) {
+        return agendaGroups.computeIfAbsent(name, AgendaGroupStatistics::new);
+    }
+
+    /**
+     * Statistics of a rule.
+     */
+    public static class RuleStatistics {
+
+        /** The rule name. */
+        private final String name;
+
+        /** The agenda group of the rule. */
+        private final String agendaGroup;
+
+        /** Number of activations created. */
+        private long created;
+
+        /** Number of activations cancelled before firing. */
+        private long cancelled;
+
+        /** Number of activations fired. */
+        private long fired;
+
+        /** Total time spent in the consequence, in nanoseconds. */
+        private long consequenceNanos;
+
+        /** Number of facts inserted by the consequence. */
+        private long inserted;
+
+        /** Number of facts updated by the consequence. */
+        private long updated;
+
+        /** Number of facts deleted by the consequence. */
+        private long deleted;
+
+        /**
+         * Standard constructor.
+         *
+         * @param nameIn the rule name
+         * @param agendaGroupIn the agenda group of the rule
+         */
+        public RuleStatistics(String nameIn, String agendaGroupIn) {
+            name = nameIn;
+            agendaGroup = agendaGroupIn;
+        }
+
+        /**
+         * Gets the rule name.
+         *
+         * @return the name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the agenda group of the rule.
+         *
+         * @return the agenda group name
+         */
+        public String getAgendaGroup() {
+            return agendaGroup;
+        }
+
+        /**
+         * Gets the number of activations created.
+         *
+         * @return the number of activations
+         */
+        public long getCreated() {
+            return created;
+        }
+
+        /**
+         * Gets the number of activations cancelled before firing.
+         *
+         * @return the number of activations
+         */
+        public long getCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Gets the number of activations fired.
+         *
+         * @return the number of activations
+         */
+        public long getFired() {
+            return fired;
+        }
+
+        /**
+         * Gets the total time spent in the consequence.
+         *
+         * @return the time in nanoseconds
+         */
+        public long getConsequenceNanos() {
+            return consequenceNanos;
+        }
+
+        /**
+         * Gets the number of facts inserted by the consequence.
+         *
+         * @return the number of facts
+         */
+        public long getInserted() {
+            return inserted;
+        }
+
+        /**
+         * Gets the number of facts updated by the consequence.
+         *
+         * @return the number of facts
+         */
+        public long getUpdated() {
+            return updated;
+        }
+
+        /**
+         * Gets the number of facts deleted by the consequence.
+         *
+         * @return the number of facts
+         */
+        public long getDeleted() {
+            return deleted;
+        }
+    }
+
+    /**
+     * Statistics of an agenda group.
+     */
+    public static class AgendaGroupStatistics {
+
+        /** The agenda group name. */
+        private final String name;
+
+        /** Number of activations fired. */
+        private long fired;
+
+        /** Time spent evaluating and firing rules, in nanoseconds. */
+        private long nanos;
+
+        /**
+         * Standard constructor.
+         *
+         * @param nameIn the agenda group name
+         */
+        public AgendaGroupStatistics(String nameIn) {
+            name = nameIn;
+        }
+
+        /**
+         * Gets the agenda group name.
+         *
+         * @return the name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the number of activations fired.
+         *
+         * @return the number of activations
+         */
+        public long getFired() {
+            return fired;
+        }
+
+        /**
+         * Gets the time spent evaluating and firing rules.
+         *
+         * @return the time in nanoseconds
+         */
+        public long getNanos() {
+            return nanos;
+        }
+    }
+}
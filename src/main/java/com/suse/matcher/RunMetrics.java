@@ -0,0 +1,299 @@
+package com.suse.matcher;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Collects timing and resource metrics of a matcher run, so that performance can be trended across runs.
+ *
+ * Each phase of a run (JSON parsing, deduction, optimization, report writing...) is measured with
+ * {@link #start(String)} and {@link Measurement#stop()}. For each phase, metrics include wall clock time,
+ * garbage collections and the time they took, and bytes allocated by the measuring thread. A phase
+ * measured more than once, like the optimization of problem parts solved in parallel, adds up all
+ * measurements, and garbage collections are counted in all phases running at the same time.
+ *
+ * Peak heap usage is measured across the whole run, from the call of {@link #begin()}. Heap usage peaks
+ * are tracked by the JVM, so they are reset at that point: only the owner of the run, like {@link Main}
+ * or {@link MatcherServer}, calls it, and runs in the same JVM must not overlap. Without that call, peak
+ * heap usage is measured from the last reset.
+ *
+ * Metrics are returned along with the solution by {@link Matcher}, see {@link RunResult}, so that
+ * {@link OutputWriter} can measure report writing and write them out last.
+ */
+public class RunMetrics {
+
+    /** Heap memory pools, to measure peak heap usage. */
+    private static final List<MemoryPoolMXBean> HEAP_POOLS = ManagementFactory.getMemoryPoolMXBeans().stream()
+        .filter(p -> p.getType() == MemoryType.HEAP)
+        .collect(Collectors.toList());
+
+    /** Garbage collectors, to measure collections. */
+    private static final List<GarbageCollectorMXBean> GARBAGE_COLLECTORS = ManagementFactory.getGarbageCollectorMXBeans();
+
+    /** Thread management, to measure allocation. Allocation is not measured if the JVM does not support it. */
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    /** Time the run started. */
+    private final Date startTime;
+
+    /** Time the run started, in nanoseconds. */
+    private final transient long startNanos;
+
+    /** Whole run time, in milliseconds, up to the last call of {@link #finish()}. */
+    private long timeMillis;
+
+    /** Peak heap usage, in bytes, up to the last call of {@link #finish()}. */
+    private long peakHeapBytes;
+
+    /** Maximum heap size, in bytes, or -1 if not defined. */
+    private final long maxHeapBytes;
+
+    /** Number of available processors. */
+    private final int processors;
+
+    /** Sizes of the run, like numbers of facts and matches, by name. */
+    private final Map<String, Long> counts = new LinkedHashMap<>();
+
+    /** Phase metrics, in order of first measurement. */
+    private final List<Phase> phases = new ArrayList<>();
+
+    /**
+     * Starts measuring a run.
+     */
+    public RunMetrics() {
+        startTime = new Date();
+        startNanos = System.nanoTime();
+        maxHeapBytes = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax();
+        processors = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Starts measuring peak heap usage, by resetting the JVM heap usage peaks.
+     */
+    public void begin() {
+        HEAP_POOLS.forEach(MemoryPoolMXBean::resetPeakUsage);
+    }
+
+    /**
+     * Starts measuring a phase, on the current thread.
+     *
+     * @param name the phase name
+     * @return the measurement, to be stopped at the end of the phase
+     */
+    public Measurement start(String name) {
+        return new Measurement(name);
+    }
+
+    /**
+     * Records a size of the run.
+     *
+     * @param name the size name
+     * @param value the size
+     */
+    public synchronized void count(String name, long value) {
+        counts.put(name, value);
+    }
+
+    /**
+     * Records whole run time and peak heap usage up to now.
+     */
+    public synchronized void finish() {
+        timeMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        peakHeapBytes = HEAP_POOLS.stream().mapToLong(p -> p.getPeakUsage().getUsed()).sum();
+    }
+
+    /**
+     * Gets the whole run time, as recorded by {@link #finish()}.
+     *
+     * @return the time in milliseconds
+     */
+    public synchronized long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /**
+     * Gets the sizes of the run.
+     *
+     * @return sizes by name
+     */
+    public synchronized Map<String, Long> getCounts() {
+        return new LinkedHashMap<>(counts);
+    }
+
+    /**
+     * Gets phase metrics.
+     *
+     * @return phases, in order of first measurement
+     */
+    public synchronized List<Phase> getPhases() {
+        return new ArrayList<>(phases);
+    }
+
+    private synchronized void add(String name, long nanos, long gcCount, long gcMillis, long allocatedBytes) {
+        Phase phase = phases.stream()
+            .filter(p -> p.name.equals(name))
+            .findFirst()
+            .orElseGet(() -> {
+                Phase newPhase = new Phase(name);
+                phases.add(newPhase);
+                return newPhase;
+            });
+        phase.count++;
+        phase.timeMillis += nanos / 1_000_000;
+        phase.gcCount += gcCount;
+        phase.gcTimeMillis += gcMillis;
+        phase.allocatedBytes += allocatedBytes;
+    }
+
+    private static long getGcCount() {
+        return GARBAGE_COLLECTORS.stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).filter(c -> c > 0).sum();
+    }
+
+    private static long getGcMillis() {
+        return GARBAGE_COLLECTORS.stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).filter(t -> t > 0).sum();
+    }
+
+    private static long getAllocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    /**
+     * A measurement of a phase in progress.
+     */
+    public class Measurement {
+
+        /** The phase name. */
+        private final String name;
+
+        /** Time the phase started, in nanoseconds. */
+        private final long startNanos;
+
+        /** Garbage collections before the phase started. */
+        private final long startGcCount;
+
+        /** Garbage collection time before the phase started, in milliseconds. */
+        private final long startGcMillis;
+
+        /** Bytes allocated by the current thread before the phase started. */
+        private final long startAllocatedBytes;
+
+        private Measurement(String nameIn) {
+            name = nameIn;
+            startGcCount = getGcCount();
+            startGcMillis = getGcMillis();
+            startAllocatedBytes = getAllocatedBytes();
+            startNanos = System.nanoTime();
+        }
+
+        /**
+         * Stops measuring the phase, on the thread that started it, and records its metrics.
+         *
+         * @return the phase time, in milliseconds
+         */
+        public long stop() {
+            long nanos = System.nanoTime() - startNanos;
+            add(name, nanos, getGcCount() - startGcCount, getGcMillis() - startGcMillis,
+                    getAllocatedBytes() - startAllocatedBytes);
+            return nanos / 1_000_000;
+        }
+    }
+
+    /**
+     * Metrics of a phase.
+     */
+    public static class Phase {
+
+        /** The phase name. */
+        private final String name;
+
+        /** Number of times the phase was measured. */
+        private int count;
+
+        /** Time spent, in milliseconds. */
+        private long timeMillis;
+
+        /** Number of garbage collections. */
+        private long gcCount;
+
+        /** Time spent in garbage collections, in milliseconds. */
+        private long gcTimeMillis;
+
+        /** Bytes allocated by measuring threads. */
+        private long allocatedBytes;
+
+        /**
+         * Standard constructor.
+         *
+         * @param nameIn the phase name
+         */
+        public Phase(String nameIn) {
+            name = nameIn;
+        }
+
+        /**
+         * Gets the phase name.
+         *
+         * @return the name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the number of times the phase was measured.
+         *
+         * @return the number of measurements
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Gets the time spent.
+         *
+         * @return the time in milliseconds
+         */
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+
+        /**
+         * Gets the number of garbage collections.
+         *
+         * @return the number of collections
+         */
+        public long getGcCount() {
+            return gcCount;
+        }
+
+        /**
+         * Gets the time spent in garbage collections.
+         *
+         * @return the time in milliseconds
+         */
+        public long getGcTimeMillis() {
+            return gcTimeMillis;
+        }
+
+        /**
+         * Gets the bytes allocated by measuring threads.
+         *
+         * @return the number of bytes
+         */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+    }
+}
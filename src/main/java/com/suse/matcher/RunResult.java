@@ -0,0 +1,79 @@
+package com.suse.matcher;
+
+import com.suse.matcher.solver.Assignment;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Result of a matcher run: the solution, along with artifacts recorded while computing it.
+ *
+ * Artifacts are kept out of the problem facts of the solution, so that only domain facts are written
+ * to output files and seen by solution consumers. {@link OutputWriter} writes them out separately.
+ */
+public class RunResult {
+
+    /** The solution. */
+    private final Assignment assignment;
+
+    /** Metrics of the run. */
+    private final RunMetrics metrics;
+
+    /** Rule profiles, if rules were profiled. */
+    private final Optional<RuleProfiler> ruleProfiler;
+
+    /** Solver telemetry of each problem part solved heuristically, if telemetry was recorded. */
+    private final List<SolverTelemetry> telemetries;
+
+    /**
+     * Standard constructor.
+     *
+     * @param assignmentIn the solution
+     * @param metricsIn metrics of the run
+     * @param ruleProfilerIn rule profiles, if rules were profiled
+     * @param telemetriesIn solver telemetry of each part, in any order
+     */
+    public RunResult(Assignment assignmentIn, RunMetrics metricsIn, Optional<RuleProfiler> ruleProfilerIn,
+            List<SolverTelemetry> telemetriesIn) {
+        assignment = assignmentIn;
+        metrics = metricsIn;
+        ruleProfiler = ruleProfilerIn;
+        telemetries = telemetriesIn;
+    }
+
+    /**
+     * Gets the solution.
+     *
+     * @return the solution
+     */
+    public Assignment getAssignment() {
+        return assignment;
+    }
+
+    /**
+     * Gets the metrics of the run.
+     *
+     * @return the metrics
+     */
+    public RunMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Gets the rule profiles.
+     *
+     * @return the profiler, if rules were profiled
+     */
+    public Optional<RuleProfiler> getRuleProfiler() {
+        return ruleProfiler;
+    }
+
+    /**
+     * Gets solver telemetry.
+     *
+     * @return telemetry of each part, empty if not recorded
+     */
+    public List<SolverTelemetry> getTelemetries() {
+        return telemetries;
+    }
+}
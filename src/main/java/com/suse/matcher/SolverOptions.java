@@ -0,0 +1,571 @@
+package com.suse.matcher;
+
+import com.suse.matcher.solver.MatchScoreCalculator;
+
+import org.optaplanner.core.api.score.buildin.hardsoft.HardSoftScore;
+import org.optaplanner.core.config.solver.SolverConfig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.function.BiConsumer;
+
+/**
+ * Options affecting how {@link OptaPlanner} looks for a solution.
+ *
+ * Defaults correspond to the behavior of the command line version when no option is given.
+ *
+ * Options can also be set by name from solver profiles, which are groups of options that trade
+ * solving time for solution quality. Profiles are defined in properties files with a line
+ * per option in the form {@code <profile>.<option name>=<value>}, where option names are those of
+ * setters without the set prefix. Options a profile does not set keep their default value.
+ */
+public class SolverOptions {
+
+    /** Upper bound of the exact match limit, beyond which exact solving can take too long. */
+    public static final int MAX_EXACT_MATCH_LIMIT = 20;
+
+    /** Fewest unimproved local search steps before stopping, when scaled with the number of matches. */
+    public static final int MIN_UNIMPROVED_STEP_COUNT_LIMIT = 100;
+
+    /** Most unimproved local search steps before stopping, when scaled with the number of matches. */
+    public static final int MAX_UNIMPROVED_STEP_COUNT_LIMIT = 1000;
+
+    /** Default profile name. */
+    public static final String DEFAULT_PROFILE = "balanced";
+
+    /** Classpath location of the profiles shipped with the program. */
+    private static final String PROFILES_RESOURCE = "/com/suse/matcher/solver-profiles.properties";
+
+    /** Option setters, by the name used in profiles. */
+    private static final Map<String, BiConsumer<SolverOptions, String>> SETTERS = Map.ofEntries(
+        Map.entry("scoreCalculation", (o, v) -> o.setScoreCalculation(ScoreCalculation.parse(v))),
+        Map.entry("moveThreadCount", (o, v) -> o.setMoveThreadCount(v)),
+        Map.entry("partitionThreadCount", (o, v) -> o.setPartitionThreadCount(Integer.parseInt(v))),
+        Map.entry("exactMatchLimit", (o, v) -> o.setExactMatchLimit(Integer.parseInt(v))),
+        Map.entry("randomSeed", (o, v) -> o.setRandomSeed(Long.parseLong(v))),
+        Map.entry("localSearch", (o, v) -> o.setLocalSearch(parseBoolean(v))),
+        Map.entry("moveTabuSize", (o, v) -> o.setMoveTabuSize(Integer.parseInt(v))),
+        Map.entry("lateAcceptanceSize", (o, v) -> o.setLateAcceptanceSize(Integer.parseInt(v))),
+        Map.entry("simulatedAnnealingStartingTemperature", (o, v) -> o.setSimulatedAnnealingStartingTemperature(v)),
+        Map.entry("selectedCountLimit", (o, v) -> o.setSelectedCountLimit(Long.parseLong(v))),
+        Map.entry("acceptedCountLimit", (o, v) -> o.setAcceptedCountLimit(Integer.parseInt(v))),
+        Map.entry("unimprovedStepCountLimit", (o, v) -> o.setUnimprovedStepCountLimit(Integer.parseInt(v))),
+        Map.entry("secondsSpentLimit", (o, v) -> o.setSecondsSpentLimit(Long.parseLong(v))),
+        Map.entry("unimprovedSecondsSpentLimit", (o, v) -> o.setUnimprovedSecondsSpentLimit(Long.parseLong(v)))
+    );
+
+    /**
+     * Ways to calculate the score of a solution. All of them produce the same scores.
+     */
+    public enum ScoreCalculation {
+        /** Rules in Scores.drl, evaluated by a Drools session. */
+        DROOLS,
+        /** {@link MatchScoreCalculator}, which updates scores incrementally. */
+        INCREMENTAL;
+
+        /**
+         * Parses a command line value.
+         *
+         * @param value a case insensitive constant name
+         * @return the corresponding constant
+         * @throws IllegalArgumentException if no constant has that name
+         */
+        public static ScoreCalculation parse(String value) {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    /** How to calculate scores. */
+    private ScoreCalculation scoreCalculation = ScoreCalculation.DROOLS;
+
+    /** Number of threads evaluating moves in parallel, see setMoveThreadCount(). */
+    private String moveThreadCount = SolverConfig.MOVE_THREAD_COUNT_NONE;
+
+    /** Number of threads solving independent parts of a problem, 0 not to split problems. */
+    private int partitionThreadCount = 0;
+
+    /** Maximum number of matches of a problem (or part) to solve exactly, 0 never to solve exactly. */
+    private int exactMatchLimit = 0;
+
+    /** Number of unimproved local search steps before stopping, 0 to scale it with the number of matches. */
+    private int unimprovedStepCountLimit = 0;
+
+    /** Seconds local search can take at most. */
+    private long secondsSpentLimit = 3600L;
+
+    /** Seconds local search can go on without improving the best score, 0 for no limit. */
+    private long unimprovedSecondsSpentLimit = 0L;
+
+    /** Seed of the random number generator. */
+    private long randomSeed = 0L;
+
+    /** true to improve the initial solution with local search. */
+    private boolean localSearch = true;
+
+    /** Number of steps during which moves are tabu after being taken, 0 for no tabu search. */
+    private int moveTabuSize = 50;
+
+    /** Number of steps whose scores moves are compared to, 0 for no late acceptance. */
+    private int lateAcceptanceSize = 0;
+
+    /** Starting temperature of simulated annealing, empty for no simulated annealing. */
+    private Optional<String> simulatedAnnealingStartingTemperature = Optional.empty();
+
+    /** Number of moves each move factory generates at most per local search step. */
+    private long selectedCountLimit = 10_000L;
+
+    /** Number of accepted moves evaluated at most per local search step. */
+    private int acceptedCountLimit = 5_000;
+
+    /** true to record solver telemetry, see {@link SolverTelemetry}. Not a profile setting. */
+    private boolean telemetry = false;
+
+    /**
+     * Creates options with default values.
+     */
+    public SolverOptions() {
+    }
+
+    /**
+     * Creates a copy of other options.
+     *
+     * @param other the options to copy
+     */
+    public SolverOptions(SolverOptions other) {
+        scoreCalculation = other.scoreCalculation;
+        moveThreadCount = other.moveThreadCount;
+        partitionThreadCount = other.partitionThreadCount;
+        exactMatchLimit = other.exactMatchLimit;
+        unimprovedStepCountLimit = other.unimprovedStepCountLimit;
+        secondsSpentLimit = other.secondsSpentLimit;
+        unimprovedSecondsSpentLimit = other.unimprovedSecondsSpentLimit;
+        randomSeed = other.randomSeed;
+        localSearch = other.localSearch;
+        moveTabuSize = other.moveTabuSize;
+        lateAcceptanceSize = other.lateAcceptanceSize;
+        simulatedAnnealingStartingTemperature = other.simulatedAnnealingStartingTemperature;
+        selectedCountLimit = other.selectedCountLimit;
+        acceptedCountLimit = other.acceptedCountLimit;
+        telemetry = other.telemetry;
+    }
+
+    /**
+     * Loads the profiles shipped with the program, and optionally more from a file.
+     *
+     * @param path a properties file with more profiles, or changes to the shipped ones
+     * @return all profiles
+     * @throws IOException if profiles cannot be read
+     */
+    public static Properties loadProfiles(Optional<Path> path) throws IOException {
+        Properties profiles = new Properties();
+        try (InputStream stream = SolverOptions.class.getResourceAsStream(PROFILES_RESOURCE)) {
+            if (stream == null) {
+                throw new IOException("Profiles not found: " + PROFILES_RESOURCE);
+            }
+            profiles.load(stream);
+        }
+        if (path.isPresent()) {
+            try (Reader reader = Files.newBufferedReader(path.get(), StandardCharsets.UTF_8)) {
+                profiles.load(reader);
+            }
+        }
+        return profiles;
+    }
+
+    /**
+     * Creates options from a profile.
+     *
+     * @param profiles all profiles, see loadProfiles()
+     * @param name the profile name
+     * @return options as set by the profile
+     * @throws IllegalArgumentException if the profile does not exist, sets unknown options or invalid values
+     */
+    public static SolverOptions fromProfile(Properties profiles, String name) {
+        String prefix = name + ".";
+        SolverOptions options = new SolverOptions();
+        boolean found = false;
+        for (String key : profiles.stringPropertyNames()) {
+            if (key.startsWith(prefix)) {
+                String option = key.substring(prefix.length());
+                BiConsumer<SolverOptions, String> setter = SETTERS.get(option);
+                if (setter == null) {
+                    throw new IllegalArgumentException("Unknown option in profile " + name + ": " + option);
+                }
+                setter.accept(options, profiles.getProperty(key).trim());
+                found = true;
+            }
+        }
+        if (!found && !name.equals(DEFAULT_PROFILE)) {
+            throw new IllegalArgumentException("Unknown profile: " + name);
+        }
+        if (options.isLocalSearch() && options.getMoveTabuSize() == 0 && options.getLateAcceptanceSize() == 0 &&
+                options.getSimulatedAnnealingStartingTemperature().isEmpty()) {
+            throw new IllegalArgumentException("Profile " + name + " uses local search without any acceptor");
+        }
+        return options;
+    }
+
+    private static boolean parseBoolean(String value) {
+        if (!value.equalsIgnoreCase("true") && !value.equalsIgnoreCase("false")) {
+            throw new IllegalArgumentException("Invalid boolean: " + value);
+        }
+        return Boolean.parseBoolean(value);
+    }
+
+    /**
+     * Gets how scores are calculated.
+     *
+     * @return the score calculation
+     */
+    public ScoreCalculation getScoreCalculation() {
+        return scoreCalculation;
+    }
+
+    /**
+     * Sets how scores are calculated.
+     *
+     * @param scoreCalculationIn the score calculation
+     */
+    public void setScoreCalculation(ScoreCalculation scoreCalculationIn) {
+        scoreCalculation = scoreCalculationIn;
+    }
+
+    /**
+     * Gets the number of threads evaluating moves in parallel.
+     *
+     * @return the move thread count, see setMoveThreadCount()
+     */
+    public String getMoveThreadCount() {
+        return moveThreadCount;
+    }
+
+    /**
+     * Sets the number of threads evaluating moves in parallel, in addition to the solver thread.
+     *
+     * Results only depend on the number of threads, so they are reproducible as long as it is fixed.
+     *
+     * @param moveThreadCountIn a positive number, AUTO to pick one based on available processors or
+     *                          NONE to evaluate moves in the solver thread
+     * @throws IllegalArgumentException if the value is none of the above
+     */
+    public void setMoveThreadCount(String moveThreadCountIn) {
+        String value = moveThreadCountIn.toUpperCase(Locale.ROOT);
+        if (!value.equals(SolverConfig.MOVE_THREAD_COUNT_NONE) && !value.equals(SolverConfig.MOVE_THREAD_COUNT_AUTO) &&
+                !(value.matches("\\d{1,4}") && Integer.parseInt(value) > 0)) {
+            throw new IllegalArgumentException("Invalid move thread count: " + moveThreadCountIn);
+        }
+        moveThreadCount = value;
+    }
+
+    /**
+     * Gets the number of threads solving independent parts of a problem.
+     *
+     * @return the partition thread count, 0 if problems are not split
+     */
+    public int getPartitionThreadCount() {
+        return partitionThreadCount;
+    }
+
+    /**
+     * Sets the number of threads solving independent parts of a problem.
+     *
+     * Problems are split in parts that share no subscription and no conflicting matches, which are then
+     * solved separately. Results do not depend on the number of threads.
+     *
+     * @param partitionThreadCountIn a positive number, or 0 not to split problems
+     * @throws IllegalArgumentException if the number is negative
+     */
+    public void setPartitionThreadCount(int partitionThreadCountIn) {
+        if (partitionThreadCountIn < 0) {
+            throw new IllegalArgumentException("Invalid partition thread count: " + partitionThreadCountIn);
+        }
+        partitionThreadCount = partitionThreadCountIn;
+    }
+
+    /**
+     * Gets the maximum number of matches of a problem to be solved exactly.
+     *
+     * @return the exact match limit, 0 if problems are never solved exactly
+     */
+    public int getExactMatchLimit() {
+        return exactMatchLimit;
+    }
+
+    /**
+     * Sets the maximum number of matches of a problem to be solved exactly.
+     *
+     * Problems (or parts of problems, see setPartitionThreadCount()) with at most this number of matches
+     * are solved by exploring all possible solutions instead of using heuristics. Time to do so grows
+     * exponentially with the number of matches, so this is only useful for small values.
+     *
+     * @param exactMatchLimitIn a number from 0 (never solve exactly) to MAX_EXACT_MATCH_LIMIT
+     * @throws IllegalArgumentException if the number is out of range
+     */
+    public void setExactMatchLimit(int exactMatchLimitIn) {
+        if (exactMatchLimitIn < 0 || exactMatchLimitIn > MAX_EXACT_MATCH_LIMIT) {
+            throw new IllegalArgumentException("Invalid exact match limit: " + exactMatchLimitIn);
+        }
+        exactMatchLimit = exactMatchLimitIn;
+    }
+
+    /**
+     * Gets the number of local search steps without improvement after which search stops.
+     *
+     * @param matchCount the number of matches in the problem
+     * @return the explicitly set limit, or one proportional to the number of matches between
+     * MIN_UNIMPROVED_STEP_COUNT_LIMIT and MAX_UNIMPROVED_STEP_COUNT_LIMIT
+     */
+    public int getUnimprovedStepCountLimit(int matchCount) {
+        if (unimprovedStepCountLimit > 0) {
+            return unimprovedStepCountLimit;
+        }
+        // multiply after capping, so that huge problems cannot overflow
+        int scaled = Math.min(matchCount, MAX_UNIMPROVED_STEP_COUNT_LIMIT) * 10;
+        return Math.max(MIN_UNIMPROVED_STEP_COUNT_LIMIT, Math.min(MAX_UNIMPROVED_STEP_COUNT_LIMIT, scaled));
+    }
+
+    /**
+     * Sets the number of local search steps without improvement after which search stops.
+     *
+     * Problems with few matches need few steps to find their best solution, so by default this is
+     * scaled with the number of matches.
+     *
+     * @param unimprovedStepCountLimitIn a positive number, or 0 to scale it with the number of matches
+     * @throws IllegalArgumentException if the number is negative
+     */
+    public void setUnimprovedStepCountLimit(int unimprovedStepCountLimitIn) {
+        if (unimprovedStepCountLimitIn < 0) {
+            throw new IllegalArgumentException("Invalid unimproved step count limit: " + unimprovedStepCountLimitIn);
+        }
+        unimprovedStepCountLimit = unimprovedStepCountLimitIn;
+    }
+
+    /**
+     * Gets the maximum number of seconds local search can take.
+     *
+     * @return the number of seconds
+     */
+    public long getSecondsSpentLimit() {
+        return secondsSpentLimit;
+    }
+
+    /**
+     * Sets the maximum number of seconds local search can take, regardless of other limits.
+     *
+     * @param secondsSpentLimitIn a positive number of seconds
+     * @throws IllegalArgumentException if the number is not positive
+     */
+    public void setSecondsSpentLimit(long secondsSpentLimitIn) {
+        if (secondsSpentLimitIn <= 0) {
+            throw new IllegalArgumentException("Invalid seconds spent limit: " + secondsSpentLimitIn);
+        }
+        secondsSpentLimit = secondsSpentLimitIn;
+    }
+
+    /**
+     * Gets the number of seconds without improvement after which local search stops.
+     *
+     * @return the number of seconds, 0 for no limit
+     */
+    public long getUnimprovedSecondsSpentLimit() {
+        return unimprovedSecondsSpentLimit;
+    }
+
+    /**
+     * Sets the number of seconds without improvement after which local search stops, in addition
+     * to the unimproved step count limit.
+     *
+     * @param unimprovedSecondsSpentLimitIn a positive number of seconds, or 0 for no limit
+     * @throws IllegalArgumentException if the number is negative
+     */
+    public void setUnimprovedSecondsSpentLimit(long unimprovedSecondsSpentLimitIn) {
+        if (unimprovedSecondsSpentLimitIn < 0) {
+            throw new IllegalArgumentException("Invalid unimproved seconds spent limit: " + unimprovedSecondsSpentLimitIn);
+        }
+        unimprovedSecondsSpentLimit = unimprovedSecondsSpentLimitIn;
+    }
+
+    /**
+     * Gets the seed of the random number generator.
+     *
+     * @return the seed
+     */
+    public long getRandomSeed() {
+        return randomSeed;
+    }
+
+    /**
+     * Sets the seed of the random number generator. Results are reproducible for any fixed seed.
+     *
+     * @param randomSeedIn the seed
+     */
+    public void setRandomSeed(long randomSeedIn) {
+        randomSeed = randomSeedIn;
+    }
+
+    /**
+     * Returns true if the initial solution is improved with local search.
+     *
+     * @return true if local search is used
+     */
+    public boolean isLocalSearch() {
+        return localSearch;
+    }
+
+    /**
+     * Sets whether the initial solution is improved with local search.
+     *
+     * @param localSearchIn false to only construct an initial solution, which is faster but usually worse
+     */
+    public void setLocalSearch(boolean localSearchIn) {
+        localSearch = localSearchIn;
+    }
+
+    /**
+     * Gets the number of steps during which moves are tabu after being taken.
+     *
+     * @return the number of steps, 0 if tabu search is not used
+     */
+    public int getMoveTabuSize() {
+        return moveTabuSize;
+    }
+
+    /**
+     * Sets the number of steps during which moves are tabu after being taken, so that local search
+     * does not run in circles.
+     *
+     * @param moveTabuSizeIn a number of steps, 0 not to use tabu search
+     * @throws IllegalArgumentException if the number is negative
+     */
+    public void setMoveTabuSize(int moveTabuSizeIn) {
+        if (moveTabuSizeIn < 0) {
+            throw new IllegalArgumentException("Invalid move tabu size: " + moveTabuSizeIn);
+        }
+        moveTabuSize = moveTabuSizeIn;
+    }
+
+    /**
+     * Gets the number of steps whose scores moves are compared to in late acceptance.
+     *
+     * @return the number of steps, 0 if late acceptance is not used
+     */
+    public int getLateAcceptanceSize() {
+        return lateAcceptanceSize;
+    }
+
+    /**
+     * Sets the number of steps whose scores moves are compared to: a move is accepted if it does not
+     * make the score worse than it was that many steps ago.
+     *
+     * @param lateAcceptanceSizeIn a number of steps, 0 not to use late acceptance
+     * @throws IllegalArgumentException if the number is negative
+     */
+    public void setLateAcceptanceSize(int lateAcceptanceSizeIn) {
+        if (lateAcceptanceSizeIn < 0) {
+            throw new IllegalArgumentException("Invalid late acceptance size: " + lateAcceptanceSizeIn);
+        }
+        lateAcceptanceSize = lateAcceptanceSizeIn;
+    }
+
+    /**
+     * Gets the starting temperature of simulated annealing.
+     *
+     * @return the temperature as a score, empty if simulated annealing is not used
+     */
+    public Optional<String> getSimulatedAnnealingStartingTemperature() {
+        return simulatedAnnealingStartingTemperature;
+    }
+
+    /**
+     * Sets the starting temperature of simulated annealing: the score difference of worsening moves
+     * that are accepted with a good probability at the start of local search, for example 0hard/100soft.
+     *
+     * @param temperature a score, or an empty string not to use simulated annealing
+     * @throws IllegalArgumentException if the temperature is not a valid score
+     */
+    public void setSimulatedAnnealingStartingTemperature(String temperature) {
+        if (temperature.isEmpty()) {
+            simulatedAnnealingStartingTemperature = Optional.empty();
+            return;
+        }
+        try {
+            HardSoftScore.parseScore(temperature);
+        }
+        catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid simulated annealing starting temperature: " + temperature, e);
+        }
+        simulatedAnnealingStartingTemperature = Optional.of(temperature);
+    }
+
+    /**
+     * Gets the number of moves each move factory generates at most per local search step.
+     *
+     * @return the number of moves
+     */
+    public long getSelectedCountLimit() {
+        return selectedCountLimit;
+    }
+
+    /**
+     * Sets the number of moves each move factory generates at most per local search step.
+     *
+     * @param selectedCountLimitIn a positive number of moves
+     * @throws IllegalArgumentException if the number is not positive
+     */
+    public void setSelectedCountLimit(long selectedCountLimitIn) {
+        if (selectedCountLimitIn <= 0) {
+            throw new IllegalArgumentException("Invalid selected count limit: " + selectedCountLimitIn);
+        }
+        selectedCountLimit = selectedCountLimitIn;
+    }
+
+    /**
+     * Gets the number of accepted moves evaluated at most per local search step.
+     *
+     * @return the number of moves
+     */
+    public int getAcceptedCountLimit() {
+        return acceptedCountLimit;
+    }
+
+    /**
+     * Sets the number of accepted moves evaluated at most per local search step, the best of which
+     * is taken.
+     *
+     * @param acceptedCountLimitIn a positive number of moves
+     * @throws IllegalArgumentException if the number is not positive
+     */
+    public void setAcceptedCountLimit(int acceptedCountLimitIn) {
+        if (acceptedCountLimitIn <= 0) {
+            throw new IllegalArgumentException("Invalid accepted count limit: " + acceptedCountLimitIn);
+        }
+        acceptedCountLimit = acceptedCountLimitIn;
+    }
+
+    /**
+     * Returns true if solver telemetry is recorded.
+     *
+     * @return true if telemetry is recorded
+     */
+    public boolean isTelemetry() {
+        return telemetry;
+    }
+
+    /**
+     * Sets whether solver telemetry is recorded. Telemetry does not change results, but it adds some
+     * overhead to every evaluated move.
+     *
+     * @param telemetryIn true to record telemetry, see {@link SolverTelemetry}
+     */
+    public void setTelemetry(boolean telemetryIn) {
+        telemetry = telemetryIn;
+    }
+}
@@ -0,0 +1,537 @@
+package com.suse.matcher;
+
+import com.suse.matcher.solver.Assignment;
+
+import org.optaplanner.core.api.score.Score;
+import org.optaplanner.core.api.score.buildin.hardsoft.HardSoftScore;
+import org.optaplanner.core.impl.constructionheuristic.scope.ConstructionHeuristicStepScope;
+import org.optaplanner.core.impl.localsearch.decider.acceptor.AbstractAcceptor;
+import org.optaplanner.core.impl.localsearch.scope.LocalSearchMoveScope;
+import org.optaplanner.core.impl.localsearch.scope.LocalSearchPhaseScope;
+import org.optaplanner.core.impl.localsearch.scope.LocalSearchStepScope;
+import org.optaplanner.core.impl.phase.event.PhaseLifecycleListenerAdapter;
+import org.optaplanner.core.impl.phase.scope.AbstractPhaseScope;
+import org.optaplanner.core.impl.phase.scope.AbstractStepScope;
+import org.optaplanner.core.impl.solver.scope.DefaultSolverScope;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Records how the CSP solver progresses, to tune termination and move selection against real workloads.
+ *
+ * Telemetry includes the best score over time and steps, time, steps and evaluated moves per phase, and,
+ * for each type of local search move (see {@link com.suse.matcher.solver.MatchMove#getSimpleMoveTypeDescription()}),
+ * how many moves were evaluated, accepted and picked as steps.
+ *
+ * Whether each move is accepted is only known inside the local search decider, so it is recorded by a
+ * {@link MoveAcceptor}, added to the solver configuration ahead of the real acceptors. OptaPlanner creates
+ * it by reflection, so it looks up the telemetry of its solver by solver scope.
+ *
+ * Telemetry is recorded when enabled in {@link SolverOptions}, then returned along with the solution (one per
+ * solved part, see {@link RunResult}), so that {@link OutputWriter} can write it out. Parts are identified by
+ * their smallest Match id, which does not depend on the order parts are solved in.
+ */
+public class SolverTelemetry extends PhaseLifecycleListenerAdapter<Assignment> {
+
+    /** Telemetry of solvers currently solving, by solver scope. */
+    private static final Map<DefaultSolverScope<?>, SolverTelemetry> ACTIVE = new ConcurrentHashMap<>();
+
+    /** Prefix of metric names in Prometheus format. */
+    private static final String PROMETHEUS_PREFIX = "subscription_matcher_solver_";
+
+    /** Smallest Match id of the problem, identifying it among parts solved separately. */
+    private final int part;
+
+    /** Number of Matches in the problem. */
+    private final int matchCount;
+
+    /** Score calculation used. */
+    private final String scoreCalculation;
+
+    /** Total solving time, in milliseconds. */
+    private long timeMillis;
+
+    /** Total number of steps. */
+    private int steps;
+
+    /** Best score at the end of solving. */
+    private String bestScore;
+
+    /** Statistics of phases, in order. */
+    private final List<Phase> phases = new ArrayList<>();
+
+    /** Best scores, each time the best score improved. */
+    private final List<BestScore> bestScores = new ArrayList<>();
+
+    /** Statistics of local search move types, by type. */
+    private final Map<String, MoveType> moveTypes = new LinkedHashMap<>();
+
+    /** Last best score, to split it into hard and soft components. */
+    private transient HardSoftScore lastBestScore;
+
+    /** Moves evaluated in the current phase. */
+    private transient long phaseMovesEvaluated;
+
+    /** Score calculations before the current phase started. */
+    private transient long phaseStartScoreCalculations;
+
+    /**
+     * Standard constructor.
+     *
+     * @param partIn smallest Match id of the problem
+     * @param matchCountIn number of Matches in the problem
+     * @param scoreCalculationIn score calculation used
+     */
+    public SolverTelemetry(int partIn, int matchCountIn, SolverOptions.ScoreCalculation scoreCalculationIn) {
+        part = partIn;
+        matchCount = matchCountIn;
+        scoreCalculation = scoreCalculationIn.toString();
+    }
+
+    /**
+     * Returns the Prometheus text format representation of telemetry of some solver runs.
+     *
+     * The best score progression is not included, as it is a time series of its own.
+     *
+     * @param telemetries telemetry of solver runs, labeled by part
+     * @return the text
+     */
+    public static String toPrometheusText(List<SolverTelemetry> telemetries) {
+        StringBuilder builder = new StringBuilder();
+        appendMetric(builder, telemetries, "time_seconds", "gauge", "Total solving time",
+            t -> List.of(Map.entry("", t.timeMillis / 1000.0)));
+        appendMetric(builder, telemetries, "steps_total", "counter", "Total number of steps",
+            t -> List.of(Map.entry("", (double) t.steps)));
+        appendMetric(builder, telemetries, "best_hard_score", "gauge", "Hard component of the best score",
+            t -> t.lastBestScore == null ? List.of() : List.of(Map.entry("", (double) t.lastBestScore.getHardScore())));
+        appendMetric(builder, telemetries, "best_soft_score", "gauge", "Soft component of the best score",
+            t -> t.lastBestScore == null ? List.of() : List.of(Map.entry("", (double) t.lastBestScore.getSoftScore())));
+        appendMetric(builder, telemetries, "phase_time_seconds", "gauge", "Time spent in each phase",
+            t -> mapPhases(t, p -> p.timeMillis / 1000.0));
+        appendMetric(builder, telemetries, "phase_steps_total", "counter", "Steps of each phase",
+            t -> mapPhases(t, p -> (double) p.steps));
+        appendMetric(builder, telemetries, "phase_moves_evaluated_per_second", "gauge",
+            "Moves evaluated per second in each phase", t -> mapPhases(t, p -> (double) p.movesEvaluatedPerSecond));
+        appendMetric(builder, telemetries, "phase_score_calculations_per_second", "gauge",
+            "Score calculations per second in each phase", t -> mapPhases(t, p -> (double) p.scoreCalculationsPerSecond));
+        appendMetric(builder, telemetries, "moves_evaluated_total", "counter", "Local search moves evaluated by type",
+            t -> mapMoveTypes(t, m -> (double) m.evaluated));
+        appendMetric(builder, telemetries, "moves_accepted_total", "counter", "Local search moves accepted by type",
+            t -> mapMoveTypes(t, m -> (double) m.accepted));
+        appendMetric(builder, telemetries, "moves_picked_total", "counter", "Local search moves picked as steps by type",
+            t -> mapMoveTypes(t, m -> (double) m.picked));
+        appendMetric(builder, telemetries, "move_acceptance_ratio", "gauge", "Ratio of accepted to evaluated moves by type",
+            t -> mapMoveTypes(t, m -> m.acceptanceRatio));
+        return builder.toString();
+    }
+
+    private static List<Map.Entry<String, Double>> mapPhases(SolverTelemetry telemetry, Function<Phase, Double> value) {
+        List<Map.Entry<String, Double>> result = new ArrayList<>();
+        for (int i = 0; i < telemetry.phases.size(); i++) {
+            Phase phase = telemetry.phases.get(i);
+            result.add(Map.entry(",phase=\"" + i + "\",phase_type=\"" + phase.type + "\"", value.apply(phase)));
+        }
+        return result;
+    }
+
+    private static List<Map.Entry<String, Double>> mapMoveTypes(SolverTelemetry telemetry, Function<MoveType, Double> value) {
+        List<Map.Entry<String, Double>> result = new ArrayList<>();
+        for (MoveType moveType : telemetry.moveTypes.values()) {
+            result.add(Map.entry(",move_type=\"" + moveType.type + "\"", value.apply(moveType)));
+        }
+        return result;
+    }
+
+    /**
+     * Appends a metric in Prometheus text format, with a sample per part and any further labels.
+     */
+    private static void appendMetric(StringBuilder builder, List<SolverTelemetry> telemetries, String name, String type,
+            String help, Function<SolverTelemetry, Collection<Map.Entry<String, Double>>> samples) {
+        builder.append("# HELP ").append(PROMETHEUS_PREFIX).append(name).append(' ').append(help).append('\n');
+        builder.append("# TYPE ").append(PROMETHEUS_PREFIX).append(name).append(' ').append(type).append('\n');
+        for (SolverTelemetry telemetry : telemetries) {
+            for (Map.Entry<String, Double> sample : samples.apply(telemetry)) {
+                builder.append(PROMETHEUS_PREFIX).append(name)
+                    .append("{part=\"").append(telemetry.part).append('"').append(sample.getKey()).append("} ")
+                    .append(sample.getValue())
+                    .append('\n');
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void solvingStarted(DefaultSolverScope<Assignment> solverScope) {
+        ACTIVE.put(solverScope, this);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void phaseStarted(AbstractPhaseScope<Assignment> phaseScope) {
+        phaseMovesEvaluated = 0;
+        phaseStartScoreCalculations = phaseScope.getSolverScope().getScoreCalculationCount();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void stepEnded(AbstractStepScope<Assignment> stepScope) {
+        steps++;
+        if (stepScope instanceof LocalSearchStepScope) {
+            LocalSearchStepScope<Assignment> localSearchStepScope = (LocalSearchStepScope<Assignment>) stepScope;
+            phaseMovesEvaluated += localSearchStepScope.getSelectedMoveCount();
+            if (localSearchStepScope.getStep() != null) {
+                getMoveType(localSearchStepScope.getStep().getSimpleMoveTypeDescription()).picked++;
+            }
+        }
+        else if (stepScope instanceof ConstructionHeuristicStepScope) {
+            phaseMovesEvaluated += ((ConstructionHeuristicStepScope<Assignment>) stepScope).getSelectedMoveCount();
+        }
+
+        // construction steps improve a score that is not initialized yet, only the last one is of interest
+        Score<?> score = stepScope.getScore();
+        if (Boolean.TRUE.equals(stepScope.getBestScoreImproved()) && score.isSolutionInitialized()) {
+            long time = stepScope.getPhaseScope().calculateSolverTimeMillisSpentUpToNow();
+            bestScores.add(new BestScore(time, steps, score.toString()));
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void phaseEnded(AbstractPhaseScope<Assignment> phaseScope) {
+        String type = phaseScope instanceof LocalSearchPhaseScope ? "localSearch" : "constructionHeuristic";
+        // listeners are notified before the phase scope records its end
+        long time = phaseScope.calculatePhaseTimeMillisSpentUpToNow();
+        long scoreCalculations = phaseScope.getSolverScope().getScoreCalculationCount() - phaseStartScoreCalculations;
+        phases.add(new Phase(type, time, phaseScope.getNextStepIndex(), phaseMovesEvaluated,
+                phaseMovesEvaluated * 1000L / Math.max(1L, time), scoreCalculations * 1000L / Math.max(1L, time)));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void solvingEnded(DefaultSolverScope<Assignment> solverScope) {
+        timeMillis = solverScope.calculateTimeMillisSpentUpToNow();
+        if (solverScope.getBestScore() instanceof HardSoftScore) {
+            lastBestScore = (HardSoftScore) solverScope.getBestScore();
+        }
+        bestScore = String.valueOf(solverScope.getBestScore());
+        moveTypes.values().forEach(m -> m.acceptanceRatio = m.evaluated == 0 ? 0.0 : (double) m.accepted / m.evaluated);
+    }
+
+    /**
+     * Stops looking up this telemetry by solver scope. Must be called once solving is over, even if
+     * it failed: in that case, {@link #solvingEnded(DefaultSolverScope)} is not notified.
+     */
+    public void release() {
+        ACTIVE.values().remove(this);
+    }
+
+    /**
+     * Gets the smallest Match id of the problem, identifying it among parts solved separately.
+     *
+     * @return the Match id
+     */
+    public int getPart() {
+        return part;
+    }
+
+    /**
+     * Gets the number of Matches in the problem.
+     *
+     * @return the number of Matches
+     */
+    public int getMatchCount() {
+        return matchCount;
+    }
+
+    /**
+     * Gets the total number of steps.
+     *
+     * @return the number of steps
+     */
+    public int getSteps() {
+        return steps;
+    }
+
+    /**
+     * Gets the best score at the end of solving.
+     *
+     * @return the best score
+     */
+    public String getBestScore() {
+        return bestScore;
+    }
+
+    /**
+     * Gets the statistics of phases.
+     *
+     * @return phases, in order
+     */
+    public List<Phase> getPhases() {
+        return phases;
+    }
+
+    /**
+     * Gets the best scores, each time the best score improved.
+     *
+     * @return the best scores, in order
+     */
+    public List<BestScore> getBestScores() {
+        return bestScores;
+    }
+
+    /**
+     * Gets the statistics of local search move types.
+     *
+     * @return the move types, in order of first evaluation
+     */
+    public Collection<MoveType> getMoveTypes() {
+        return moveTypes.values();
+    }
+
+    private MoveType getMoveType(String type) {
+        return moveTypes.computeIfAbsent(type, MoveType::new);
+    }
+
+    /**
+     * Statistics of a solver phase.
+     */
+    public static class Phase {
+
+        /** The phase type. */
+        private final String type;
+
+        /** Time spent, in milliseconds. */
+        private final long timeMillis;
+
+        /** Number of steps. */
+        private final int steps;
+
+        /** Number of moves evaluated. */
+        private final long movesEvaluated;
+
+        /** Number of moves evaluated per second. */
+        private final long movesEvaluatedPerSecond;
+
+        /** Number of score calculations per second. */
+        private final long scoreCalculationsPerSecond;
+
+        /**
+         * Standard constructor.
+         *
+         * @param typeIn the phase type
+         * @param timeMillisIn time spent, in milliseconds
+         * @param stepsIn number of steps
+         * @param movesEvaluatedIn number of moves evaluated
+         * @param movesEvaluatedPerSecondIn number of moves evaluated per second
+         * @param scoreCalculationsPerSecondIn number of score calculations per second
+         */
+        public Phase(String typeIn, long timeMillisIn, int stepsIn, long movesEvaluatedIn,
+                long movesEvaluatedPerSecondIn, long scoreCalculationsPerSecondIn) {
+            type = typeIn;
+            timeMillis = timeMillisIn;
+            steps = stepsIn;
+            movesEvaluated = movesEvaluatedIn;
+            movesEvaluatedPerSecond = movesEvaluatedPerSecondIn;
+            scoreCalculationsPerSecond = scoreCalculationsPerSecondIn;
+        }
+
+        /**
+         * Gets the phase type.
+         *
+         * @return constructionHeuristic or localSearch
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * Gets the number of steps.
+         *
+         * @return the number of steps
+         */
+        public int getSteps() {
+            return steps;
+        }
+
+        /**
+         * Gets the number of moves evaluated.
+         *
+         * @return the number of moves
+         */
+        public long getMovesEvaluated() {
+            return movesEvaluated;
+        }
+    }
+
+    /**
+     * A best score, and when it was reached.
+     */
+    public static class BestScore {
+
+        /** Time since solving started, in milliseconds. */
+        private final long timeMillis;
+
+        /** Number of steps since solving started. */
+        private final int step;
+
+        /** The score. */
+        private final String score;
+
+        /**
+         * Standard constructor.
+         *
+         * @param timeMillisIn time since solving started, in milliseconds
+         * @param stepIn number of steps since solving started
+         * @param scoreIn the score
+         */
+        public BestScore(long timeMillisIn, int stepIn, String scoreIn) {
+            timeMillis = timeMillisIn;
+            step = stepIn;
+            score = scoreIn;
+        }
+
+        /**
+         * Gets the number of steps since solving started.
+         *
+         * @return the number of steps
+         */
+        public int getStep() {
+            return step;
+        }
+
+        /**
+         * Gets the score.
+         *
+         * @return the score
+         */
+        public String getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * Statistics of a local search move type.
+     */
+    public static class MoveType {
+
+        /** The move type. */
+        private final String type;
+
+        /** Number of moves evaluated. */
+        private long evaluated;
+
+        /** Number of moves accepted. */
+        private long accepted;
+
+        /** Number of moves picked as steps. */
+        private long picked;
+
+        /** Ratio of accepted to evaluated moves. */
+        private double acceptanceRatio;
+
+        /**
+         * Standard constructor.
+         *
+         * @param typeIn the move type
+         */
+        public MoveType(String typeIn) {
+            type = typeIn;
+        }
+
+        /**
+         * Gets the move type.
+         *
+         * @return the move type
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * Gets the number of moves evaluated.
+         *
+         * @return the number of moves
+         */
+        public long getEvaluated() {
+            return evaluated;
+        }
+
+        /**
+         * Gets the number of moves accepted.
+         *
+         * @return the number of moves
+         */
+        public long getAccepted() {
+            return accepted;
+        }
+
+        /**
+         * Gets the number of moves picked as steps.
+         *
+         * @return the number of moves
+         */
+        public long getPicked() {
+            return picked;
+        }
+    }
+
+    /**
+     * Records whether each move is accepted, accepting all of them: other acceptors decide.
+     *
+     * The decider marks a move as accepted after asking all acceptors, so each move is recorded
+     * when the next one is evaluated, or when the step ends.
+     */
+    @SuppressWarnings("rawtypes") // OptaPlanner acceptor scopes are raw types
+    public static class MoveAcceptor extends AbstractAcceptor {
+
+        /** Telemetry of the current solver, if it is recorded. */
+        private SolverTelemetry telemetry;
+
+        /** The last evaluated move, not recorded yet. */
+        private LocalSearchMoveScope<?> lastMoveScope;
+
+        /** {@inheritDoc} */
+        @Override
+        public void phaseStarted(LocalSearchPhaseScope phaseScope) {
+            telemetry = ACTIVE.get(phaseScope.getSolverScope());
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean isAccepted(LocalSearchMoveScope moveScope) {
+            recordLastMove();
+            lastMoveScope = moveScope;
+            return true;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void stepEnded(LocalSearchStepScope stepScope) {
+            recordLastMove();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void phaseEnded(LocalSearchPhaseScope phaseScope) {
+            recordLastMove();
+            telemetry = null;
+        }
+
+        private void recordLastMove() {
+            if (telemetry != null && lastMoveScope != null) {
+                MoveType moveType = telemetry.getMoveType(lastMoveScope.getMove().getSimpleMoveTypeDescription());
+                moveType.evaluated++;
+                if (Boolean.TRUE.equals(lastMoveScope.getAccepted())) {
+                    moveType.accepted++;
+                }
+            }
+            lastMoveScope = null;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.suse.matcher.csv;
+
+import com.suse.matcher.RuleProfiler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Statistics of an agenda group as represented in a CSV output file.
+ */
+public class CSVOutputAgendaGroupProfile {
+
+    /** Header for the CSV output. */
+    public static final String[] CSV_HEADER = {"Agenda Group", "Activations Fired", "Time (ms)"};
+
+    /** The agenda group statistics. */
+    private final RuleProfiler.AgendaGroupStatistics statistics;
+
+    /**
+     * Instantiates a new CSV output agenda group profile.
+     *
+     * @param statisticsIn the agenda group statistics
+     */
+    public CSVOutputAgendaGroupProfile(RuleProfiler.AgendaGroupStatistics statisticsIn) {
+        statistics = statisticsIn;
+    }
+
+    /**
+     * Gets the CSV row.
+     * @return the CSV row
+     */
+    public List<String> getCSVRow() {
+        List<String> row = new ArrayList<>();
+        row.add(statistics.getName());
+        row.add(String.valueOf(statistics.getFired()));
+        row.add(String.format(Locale.ROOT, "%.3f", statistics.getNanos() / 1_000_000.0));
+        return row;
+    }
+}
@@ -0,0 +1,48 @@
+package com.suse.matcher.csv;
+
+import com.suse.matcher.RuleProfiler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Statistics of a rule as represented in a CSV output file.
+ */
+public class CSVOutputRuleProfile {
+
+    /** Header for the CSV output. */
+    public static final String[] CSV_HEADER = {"Rule", "Agenda Group", "Activations Created",
+            "Activations Cancelled", "Activations Fired", "Consequence Time (ms)", "Facts Inserted",
+            "Facts Updated", "Facts Deleted"};
+
+    /** The rule statistics. */
+    private final RuleProfiler.RuleStatistics statistics;
+
+    /**
+     * Instantiates a new CSV output rule profile.
+     *
+     * @param statisticsIn the rule statistics
+     */
+    public CSVOutputRuleProfile(RuleProfiler.RuleStatistics statisticsIn) {
+        statistics = statisticsIn;
+    }
+
+    /**
+     * Gets the CSV row.
+     * @return the CSV row
+     */
+    public List<String> getCSVRow() {
+        List<String> row = new ArrayList<>();
+        row.add(statistics.getName());
+        row.add(statistics.getAgendaGroup());
+        row.add(String.valueOf(statistics.getCreated()));
+        row.add(String.valueOf(statistics.getCancelled()));
+        row.add(String.valueOf(statistics.getFired()));
+        row.add(String.format(Locale.ROOT, "%.3f", statistics.getConsequenceNanos() / 1_000_000.0));
+        row.add(String.valueOf(statistics.getInserted()));
+        row.add(String.valueOf(statistics.getUpdated()));
+        row.add(String.valueOf(statistics.getDeleted()));
+        return row;
+    }
+}
@@ -85,7 +85,7 @@ public class Subscription implements Comparable<Subscription> {
     /** SCC Username. */
     public String sccUsername;
 
-    // rule-computed fields
+    // part number-computed fields, see PartNumberCatalog
     /** Virtualization policy. */
     public Policy policy;
 
@@ -98,6 +98,7 @@ public class Subscription implements Comparable<Subscription> {
     /**   Can this subscription be used multiple times on the same system?. */
     public Boolean stackable;
 
+    // rule-computed fields
     /** Should this subscription be matched at all? Eg. expired subscriptions can be ignored. */
     public Boolean ignored = false;
 
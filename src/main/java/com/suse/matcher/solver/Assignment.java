@@ -1,6 +1,9 @@
 package com.suse.matcher.solver;
 
 import com.suse.matcher.facts.PotentialMatch;
+import com.suse.matcher.facts.Product;
+import com.suse.matcher.facts.Subscription;
+import com.suse.matcher.facts.System;
 
 import org.optaplanner.core.api.domain.solution.PlanningEntityCollectionProperty;
 import org.optaplanner.core.api.domain.solution.PlanningSolution;
@@ -8,10 +11,13 @@ import org.optaplanner.core.api.domain.solution.Solution;
 import org.optaplanner.core.api.domain.valuerange.ValueRangeProvider;
 import org.optaplanner.core.api.score.buildin.hardsoft.HardSoftScore;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -31,12 +37,27 @@ public class Assignment implements Solution<HardSoftScore> {
     /** Other problem facts passed by Drools. */
     private Collection<Object> problemFacts;
 
-    /** Maps every {@link Match} id to all conflicting sets where it appears. */
-    private Map<Integer, List<List<Integer>>> conflictMap;
+    /** Conflicts between {@link Match}es. */
+    private ConflictGraph conflictGraph;
+
+    /** {@link Match}es by id, see getMatchById(). */
+    private MatchIndex matchIndex;
 
     /** Cache of sorted potential matches. */
     private List<PotentialMatch> sortedPotentialMatchesCache;
 
+    /** Problem facts partitioned by their exact class, in original order. Built on first use. */
+    private Map<Class<?>, List<Object>> problemFactsByClass;
+
+    /** {@link System} facts by id. Built on first use. */
+    private Map<Long, System> systemsById;
+
+    /** {@link Product} facts by id. Built on first use. */
+    private Map<Long, Product> productsById;
+
+    /** {@link Subscription} facts by id. Built on first use. */
+    private Map<Long, Subscription> subscriptionsById;
+
     /**
      * Default constructor, required by OptaPlanner.
      */
@@ -48,14 +69,14 @@ public class Assignment implements Solution<HardSoftScore> {
      *
      * @param matchesIn fact corresponding to possible matches
      * @param problemFactsIn any other problem facts
-     * @param conflictMapIn maps every {@link Match} id to any conflicting sets where it appears
+     * @param conflictGraphIn conflicts between {@link Match}es
      * @param sortedPotentialMatchesIn sorted potential matches
      */
     public Assignment(List<Match> matchesIn, Collection<Object> problemFactsIn,
-            Map<Integer, List<List<Integer>>> conflictMapIn, List<PotentialMatch> sortedPotentialMatchesIn) {
+            ConflictGraph conflictGraphIn, List<PotentialMatch> sortedPotentialMatchesIn) {
         matches = matchesIn;
         problemFacts = problemFactsIn;
-        conflictMap = conflictMapIn;
+        conflictGraph = conflictGraphIn;
         sortedPotentialMatchesCache = sortedPotentialMatchesIn;
     }
 
@@ -78,6 +99,21 @@ public class Assignment implements Solution<HardSoftScore> {
         return sortedPotentialMatchesCache;
     }
 
+    /**
+     * Adds problem facts to this assignment.
+     *
+     * @param facts the facts to add
+     */
+    public void addProblemFacts(Collection<?> facts) {
+        problemFacts.addAll(facts);
+        if (problemFactsByClass != null) {
+            facts.forEach(fact -> problemFactsByClass.computeIfAbsent(fact.getClass(), k -> new ArrayList<>()).add(fact));
+        }
+        systemsById = null;
+        productsById = null;
+        subscriptionsById = null;
+    }
+
     /**
      * Returns a stream of problem facts filtered by type.
      *
@@ -87,8 +123,24 @@ public class Assignment implements Solution<HardSoftScore> {
      */
     @SuppressWarnings("unchecked") // no way around this in Java 8
     public <T> Stream<T> getProblemFactStream(Class<T> type) {
-        return getProblemFacts().stream()
-            .filter(o -> type.isAssignableFrom(o.getClass()))
+        if (problemFactsByClass == null) {
+            problemFactsByClass = getProblemFacts().stream()
+                .collect(Collectors.groupingBy(Object::getClass, HashMap::new, Collectors.toList()));
+        }
+
+        List<Class<?>> classes = problemFactsByClass.keySet().stream()
+            .filter(type::isAssignableFrom)
+            .collect(Collectors.toList());
+
+        // facts of a single class can be returned from the index as they are, otherwise
+        // scan all facts so that their original order is kept
+        if (classes.size() > 1) {
+            return getProblemFacts().stream()
+                .filter(o -> type.isAssignableFrom(o.getClass()))
+                .map(o -> (T)o);
+        }
+        return classes.stream()
+            .flatMap(c -> problemFactsByClass.get(c).stream())
             .map(o -> (T)o);
     }
 
@@ -104,6 +156,52 @@ public class Assignment implements Solution<HardSoftScore> {
             .collect(Collectors.toList());
     }
 
+    /**
+     * Returns the {@link System} fact with the specified id.
+     *
+     * @param id the system id
+     * @return the system, if any
+     */
+    public Optional<System> getSystemById(Long id) {
+        if (systemsById == null) {
+            systemsById = indexById(System.class, System::getId);
+        }
+        return Optional.ofNullable(systemsById.get(id));
+    }
+
+    /**
+     * Returns the {@link Product} fact with the specified id.
+     *
+     * @param id the product id
+     * @return the product, if any
+     */
+    public Optional<Product> getProductById(Long id) {
+        if (productsById == null) {
+            productsById = indexById(Product.class, Product::getId);
+        }
+        return Optional.ofNullable(productsById.get(id));
+    }
+
+    /**
+     * Returns the {@link Subscription} fact with the specified id.
+     *
+     * @param id the subscription id
+     * @return the subscription, if any
+     */
+    public Optional<Subscription> getSubscriptionById(Long id) {
+        if (subscriptionsById == null) {
+            subscriptionsById = indexById(Subscription.class, Subscription::getId);
+        }
+        return Optional.ofNullable(subscriptionsById.get(id));
+    }
+
+    private <T> Map<Long, T> indexById(Class<T> type, Function<T, Long> idFunction) {
+        // keep the first fact in case of duplicate ids, as a linear search would
+        Map<Long, T> result = new HashMap<>();
+        getProblemFactStream(type).forEach(fact -> result.putIfAbsent(idFunction.apply(fact), fact));
+        return result;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -130,6 +228,21 @@ public class Assignment implements Solution<HardSoftScore> {
         return matches;
     }
 
+    /**
+     * Returns the {@link Match} with the specified id.
+     *
+     * @param id a {@link Match} id
+     * @return the Match, or null if there is none with that id
+     */
+    public Match getMatchById(int id) {
+        // OptaPlanner's solution cloner copies the index as-is, but gives clones a new list of
+        // cloned matches: rebuild the index whenever it was not built for the current list
+        if (matchIndex == null || matchIndex.source != matches) {
+            matchIndex = new MatchIndex(matches);
+        }
+        return id >= 0 && id < matchIndex.matchesById.length ? matchIndex.matchesById[id] : null;
+    }
+
     /**
      * Returns values for a {@link Match} confirmed field that OptaPlanner will
      * change.
@@ -141,15 +254,30 @@ public class Assignment implements Solution<HardSoftScore> {
         return List.of(Boolean.FALSE, Boolean.TRUE);
     }
 
+    /**
+     * Returns conflicts between {@link Match}es.
+     *
+     * @return the conflict graph
+     */
+    public ConflictGraph getConflictGraph() {
+        return conflictGraph;
+    }
 
     /**
-     * Returns {@link Match} ids conflicting with the specified {@link Match}.
-     * @param matchId a {@link Match} id
-     * @return the conflicting ids
+     * {@link Match}es by id.
      */
-    public Stream<Integer> getConflictingMatchIds(Integer matchId) {
-        return conflictMap.get(matchId).stream()
-            .flatMap(s -> s.stream())
-            .filter(id -> !Objects.equals(id, matchId));
+    private static class MatchIndex {
+
+        /** The list this index was built from. */
+        private final List<Match> source;
+
+        /** Matches by id, null where no Match has that id. */
+        private final Match[] matchesById;
+
+        MatchIndex(List<Match> sourceIn) {
+            source = sourceIn;
+            matchesById = new Match[source.stream().mapToInt(m -> m.id).max().orElse(-1) + 1];
+            source.forEach(m -> matchesById[m.id] = m);
+        }
     }
 }
@@ -0,0 +1,182 @@
+package com.suse.matcher.solver;
+
+import com.suse.matcher.facts.CentGroup;
+import com.suse.matcher.facts.InstalledProduct;
+import com.suse.matcher.facts.PenaltyGroup;
+import com.suse.matcher.facts.PinnedMatch;
+import com.suse.matcher.facts.PotentialMatch;
+import com.suse.matcher.facts.Subscription;
+
+import org.optaplanner.core.api.score.buildin.hardsoft.HardSoftScore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Splits an {@link Assignment} into independent parts that can be solved separately, and merges
+ * solved parts back.
+ *
+ * Two {@link Match}es are in the same part if they have potential matches on the same
+ * {@link Subscription} or if they conflict (that is, cover the same product on the same system),
+ * directly or through other Matches. Score rules only relate Matches in one of those two ways, so
+ * the score of a solution is the sum of the scores of its parts, and the best solution is made of
+ * the best solutions of its parts.
+ */
+public class AssignmentPartitioner {
+
+    private AssignmentPartitioner() {
+        // Prevent instantiation
+    }
+
+    /**
+     * Splits an unsolved assignment into independent parts.
+     *
+     * Each part has its own Matches, and the problem facts needed to score them.
+     *
+     * @param assignment the assignment to split
+     * @return the parts, ordered by their first Match. The assignment itself if it cannot be split
+     */
+    public static List<Assignment> partition(Assignment assignment) {
+        List<Match> matches = assignment.getMatches();
+        ConflictGraph conflicts = assignment.getConflictGraph();
+
+        // join Matches sharing a subscription or conflicting
+        int idBound = matches.stream().mapToInt(m -> m.id + 1).max().orElse(0);
+        int[] parents = new int[idBound];
+        Arrays.fill(parents, -1);
+        matches.forEach(m -> parents[m.id] = m.id);
+
+        List<PotentialMatch> potentialMatches = assignment.getSortedPotentialMatchesCache().stream()
+            .filter(p -> hasMatch(parents, p.groupId))
+            .collect(Collectors.toList());
+
+        Map<Long, Integer> matchIdsBySubscription = new HashMap<>();
+        for (PotentialMatch p : potentialMatches) {
+            int matchId = matchIdsBySubscription.computeIfAbsent(p.subscriptionId, k -> p.groupId);
+            union(parents, matchId, p.groupId);
+        }
+        for (Match match : matches) {
+            for (int i = 0; i < conflicts.getDegree(match.id); i++) {
+                union(parents, match.id, conflicts.getConflictingId(match.id, i));
+            }
+        }
+
+        // group Matches by part, keyed by the part root
+        Map<Integer, List<Match>> matchesByRoot = matches.stream()
+            .collect(Collectors.groupingBy(m -> find(parents, m.id), LinkedHashMap::new, Collectors.toList()));
+        if (matchesByRoot.size() <= 1) {
+            return List.of(assignment);
+        }
+
+        // find in which parts each fact is needed
+        Map<Integer, List<PotentialMatch>> potentialMatchesByRoot = potentialMatches.stream()
+            .collect(Collectors.groupingBy(p -> find(parents, p.groupId)));
+        Map<Long, Set<Integer>> rootsBySubscription = new HashMap<>();
+        Map<Long, Set<Integer>> rootsBySystem = new HashMap<>();
+        Map<Integer, Set<Integer>> rootsByCentGroup = new HashMap<>();
+        potentialMatches.forEach(p -> {
+            int root = find(parents, p.groupId);
+            rootsBySubscription.computeIfAbsent(p.subscriptionId, k -> new LinkedHashSet<>()).add(root);
+            rootsBySystem.computeIfAbsent(p.systemId, k -> new LinkedHashSet<>()).add(root);
+            rootsByCentGroup.computeIfAbsent(p.centGroupId, k -> new LinkedHashSet<>()).add(root);
+        });
+
+        Map<Integer, List<Object>> factsByRoot = new HashMap<>();
+        for (Object fact : assignment.getProblemFacts()) {
+            Collection<Integer> roots = Set.of();
+            if (fact instanceof PotentialMatch) {
+                int groupId = ((PotentialMatch) fact).groupId;
+                roots = hasMatch(parents, groupId) ? Set.of(find(parents, groupId)) : Set.of();
+            }
+            else if (fact instanceof Subscription) {
+                roots = rootsBySubscription.getOrDefault(((Subscription) fact).id, Set.of());
+            }
+            else if (fact instanceof CentGroup) {
+                roots = rootsByCentGroup.getOrDefault(((CentGroup) fact).id, Set.of());
+            }
+            else if (fact instanceof PenaltyGroup) {
+                roots = rootsBySystem.getOrDefault(((PenaltyGroup) fact).getGuestId(), Set.of());
+            }
+            else if (fact instanceof InstalledProduct) {
+                roots = rootsBySystem.getOrDefault(((InstalledProduct) fact).systemId, Set.of());
+            }
+            else if (fact instanceof PinnedMatch) {
+                roots = rootsBySystem.getOrDefault(((PinnedMatch) fact).systemId, Set.of());
+            }
+            for (int root : roots) {
+                factsByRoot.computeIfAbsent(root, k -> new ArrayList<>()).add(fact);
+            }
+        }
+
+        return matchesByRoot.entrySet().stream()
+            .map(e -> new Assignment(
+                e.getValue(),
+                factsByRoot.getOrDefault(e.getKey(), new ArrayList<>()),
+                conflicts,
+                potentialMatchesByRoot.getOrDefault(e.getKey(), List.of())
+            ))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Merges solved parts of an assignment.
+     *
+     * @param assignment the assignment that was split
+     * @param solvedParts solutions of all its parts
+     * @return a solution of the assignment, with Matches in the original order and the sum of scores of all parts
+     */
+    public static Assignment merge(Assignment assignment, List<Assignment> solvedParts) {
+        Map<Integer, Match> solvedMatches = new HashMap<>();
+        HardSoftScore score = HardSoftScore.ZERO;
+        for (Assignment part : solvedParts) {
+            part.getMatches().forEach(m -> solvedMatches.put(m.id, m));
+            if (part.getScore() != null) {
+                score = score.add(part.getScore());
+            }
+        }
+
+        List<Match> matches = assignment.getMatches().stream()
+            .map(m -> solvedMatches.getOrDefault(m.id, m))
+            .collect(Collectors.toList());
+
+        Assignment result = new Assignment(matches, assignment.getProblemFacts(), assignment.getConflictGraph(),
+            assignment.getSortedPotentialMatchesCache());
+        result.setScore(score);
+        return result;
+    }
+
+    private static boolean hasMatch(int[] parents, int id) {
+        return id >= 0 && id < parents.length && parents[id] >= 0;
+    }
+
+    private static int find(int[] parents, int id) {
+        int root = id;
+        while (parents[root] != root) {
+            root = parents[root];
+        }
+        // compress the path, so that later finds are faster
+        while (parents[id] != root) {
+            int next = parents[id];
+            parents[id] = root;
+            id = next;
+        }
+        return root;
+    }
+
+    private static void union(int[] parents, int id1, int id2) {
+        int root1 = find(parents, id1);
+        int root2 = find(parents, id2);
+        if (root1 != root2) {
+            // keep the smallest id as root, so that parts do not depend on the order of unions
+            parents[Math.max(root1, root2)] = Math.min(root1, root2);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.suse.matcher.solver;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Conflicts between {@link Match}es: two Matches conflict if they cannot be confirmed at the same time.
+ *
+ * Conflicting ids are stored in compressed sparse row form: a single array of ids, in which those
+ * conflicting with a certain Match occupy a contiguous range delimited by an offsets array indexed
+ * by Match id. Querying conflicts does not allocate any object, which matters as it is done for
+ * every move the solver generates.
+ */
+public class ConflictGraph {
+
+    /** Offsets of each Match id's range in the ids array. Range for id i is [offsets[i], offsets[i + 1]). */
+    private final int[] offsets;
+
+    /** Conflicting ids, grouped by Match id. */
+    private final int[] conflictingIds;
+
+    /**
+     * Builds a graph from conflict sets: sets of {@link Match} ids that pairwise conflict.
+     *
+     * Conflicting ids of each Match are deduplicated and kept in the order of their first appearance
+     * in its conflict sets.
+     *
+     * @param conflictSetsIn maps every non-negative {@link Match} id to all conflict sets in which it appears
+     */
+    public ConflictGraph(Map<Integer, List<int[]>> conflictSetsIn) {
+        int idBound = conflictSetsIn.keySet().stream()
+            .mapToInt(id -> {
+                if (id < 0) {
+                    throw new IllegalArgumentException("Match ids must not be negative: " + id);
+                }
+                return id + 1;
+            })
+            .max()
+            .orElse(0);
+
+        int maxSize = conflictSetsIn.values().stream()
+            .flatMap(List::stream)
+            .mapToInt(set -> set.length)
+            .sum();
+
+        offsets = new int[idBound + 1];
+        int[] ids = new int[maxSize];
+        // lastSeen[j] == i + 1 if id j was already added for Match id i
+        int[] lastSeen = new int[idBound];
+        int size = 0;
+        for (int i = 0; i < idBound; i++) {
+            offsets[i] = size;
+            for (int[] set : conflictSetsIn.getOrDefault(i, Collections.emptyList())) {
+                for (int j : set) {
+                    if (j != i && lastSeen[j] != i + 1) {
+                        lastSeen[j] = i + 1;
+                        ids[size++] = j;
+                    }
+                }
+            }
+        }
+        offsets[idBound] = size;
+        conflictingIds = Arrays.copyOf(ids, size);
+    }
+
+    /**
+     * Returns the number of {@link Match}es conflicting with the specified one.
+     *
+     * @param matchId a {@link Match} id
+     * @return the number of conflicting Matches
+     */
+    public int getDegree(int matchId) {
+        if (matchId < 0 || matchId >= offsets.length - 1) {
+            return 0;
+        }
+        return offsets[matchId + 1] - offsets[matchId];
+    }
+
+    /**
+     * Returns an id of a {@link Match} conflicting with the specified one.
+     *
+     * @param matchId a {@link Match} id
+     * @param index index of the conflicting Match, from 0 (included) to getDegree(matchId) (excluded)
+     * @return the conflicting id
+     */
+    public int getConflictingId(int matchId, int index) {
+        return conflictingIds[offsets[matchId] + index];
+    }
+
+    /**
+     * Returns an upper bound of all {@link Match} ids in this graph.
+     *
+     * @return a number greater than all ids, useful to size arrays indexed by id
+     */
+    public int getIdBound() {
+        return offsets.length - 1;
+    }
+}
@@ -0,0 +1,119 @@
+package com.suse.matcher.solver;
+
+import org.optaplanner.core.api.score.buildin.hardsoft.HardSoftScore;
+
+import java.util.List;
+
+/**
+ * Finds an optimal solution of small problems by exploring all assignments of {@link Match}es that
+ * do not confirm conflicting ones.
+ *
+ * The search is a depth first branch and bound: each Match is first confirmed, then not, and a
+ * branch is abandoned when even confirming all remaining Matches could not beat the best solution
+ * found so far. Soft score rules only reward confirmed Matches, while confirming a Match can only
+ * lower the hard score, so that bound is safe. Confirmations exceeding a subscription are never
+ * explored, as the hard score is 0 when no Match is confirmed.
+ *
+ * Scores are calculated by {@link MatchScoreCalculator}, hence are the same as in Scores.drl.
+ * Among solutions with the same score, the first one found is kept, so results are deterministic.
+ */
+public class ExactSolver {
+
+    /** The problem being solved, whose Matches are changed during the search. */
+    private final Assignment assignment;
+
+    /** The problem Matches, in search order. */
+    private final List<Match> matches;
+
+    /** Score calculator, kept up to date with the Matches. */
+    private final MatchScoreCalculator calculator = new MatchScoreCalculator();
+
+    /** Sum of soft scores of Matches from each index on, if they were all confirmed. */
+    private final int[] remainingSoftScores;
+
+    /** Best score found so far. */
+    private HardSoftScore bestScore;
+
+    /** Confirmed flags of the best solution found so far. */
+    private final boolean[] bestConfirmedFlags;
+
+    /**
+     * Instantiates a solver for the specified problem.
+     *
+     * @param unsolved a problem with all Matches not evaluated yet
+     */
+    public ExactSolver(Assignment unsolved) {
+        assignment = unsolved;
+        matches = unsolved.getMatches();
+        bestConfirmedFlags = new boolean[matches.size()];
+
+        matches.forEach(m -> m.setConfirmed(false));
+        calculator.resetWorkingSolution(assignment);
+        bestScore = calculator.calculateScore();
+
+        remainingSoftScores = new int[matches.size() + 1];
+        for (int i = matches.size() - 1; i >= 0; i--) {
+            remainingSoftScores[i] = remainingSoftScores[i + 1] + calculator.getMatchSoftScore(matches.get(i).id);
+        }
+    }
+
+    /**
+     * Finds an optimal solution.
+     *
+     * @return the problem, with optimal confirmed flags and score
+     */
+    public Assignment solve() {
+        search(0);
+
+        for (int i = 0; i < matches.size(); i++) {
+            matches.get(i).setConfirmed(bestConfirmedFlags[i]);
+        }
+        assignment.setScore(bestScore);
+        return assignment;
+    }
+
+    private void search(int index) {
+        HardSoftScore score = calculator.calculateScore();
+        if (index == matches.size()) {
+            if (score.compareTo(bestScore) > 0) {
+                bestScore = score;
+                for (int i = 0; i < matches.size(); i++) {
+                    bestConfirmedFlags[i] = matches.get(i).confirmed;
+                }
+            }
+            return;
+        }
+
+        // prune if no solution in this branch can beat the best one
+        HardSoftScore bound = HardSoftScore.of(score.getHardScore(), score.getSoftScore() + remainingSoftScores[index]);
+        if (bound.compareTo(bestScore) <= 0) {
+            return;
+        }
+
+        Match match = matches.get(index);
+        if (!hasConfirmedConflicts(match)) {
+            setConfirmed(match, true);
+            if (calculator.calculateScore().getHardScore() >= 0) {
+                search(index + 1);
+            }
+            setConfirmed(match, false);
+        }
+        search(index + 1);
+    }
+
+    private boolean hasConfirmedConflicts(Match match) {
+        ConflictGraph conflicts = assignment.getConflictGraph();
+        for (int i = 0; i < conflicts.getDegree(match.id); i++) {
+            if (assignment.getMatchById(conflicts.getConflictingId(match.id, i)).confirmed == Boolean.TRUE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void setConfirmed(Match match, boolean confirmed) {
+        calculator.beforeVariableChanged(match, "confirmed");
+        match.setConfirmed(confirmed);
+        calculator.afterVariableChanged(match, "confirmed");
+    }
+}
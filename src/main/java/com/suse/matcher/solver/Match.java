@@ -12,6 +12,7 @@ import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 import org.optaplanner.core.api.domain.entity.PlanningEntity;
+import org.optaplanner.core.api.domain.lookup.PlanningId;
 import org.optaplanner.core.api.domain.variable.PlanningVariable;
 
 /**
@@ -61,6 +62,16 @@ public class Match implements Comparable<Match> {
         return id;
     }
 
+    /**
+     * Gets the id as an object, which OptaPlanner uses to find this Match in copies of the solution.
+     *
+     * @return the id
+     */
+    @PlanningId
+    public Integer getPlanningId() {
+        return id;
+    }
+
     /**
      * Checks if is confirmed.
      *
@@ -22,15 +22,20 @@ public class MatchMove extends AbstractMove<Assignment> {
     /** The confirmed flags. */
     List<Boolean> confirmedFlags;
 
+    /** The type of this move, telling apart moves of different factories. */
+    private final String moveType;
+
     /**
      * Instantiates a new match move.
      *
      * @param matchesIn the matches to flip
      * @param confirmedFlagsIn the new values of their confirmed flags. Must match in size()
+     * @param moveTypeIn the type of this move, usually the simple name of the factory that created it
      */
-    public MatchMove(List<Match> matchesIn, List<Boolean> confirmedFlagsIn) {
+    public MatchMove(List<Match> matchesIn, List<Boolean> confirmedFlagsIn, String moveTypeIn) {
         matches = matchesIn;
         confirmedFlags = confirmedFlagsIn;
+        moveType = moveTypeIn;
     }
 
     /**
@@ -64,7 +69,24 @@ public class MatchMove extends AbstractMove<Assignment> {
                 .map(m -> m.confirmed)
                 .collect(Collectors.toList());
 
-        return new MatchMove(matches, newConfirmedFlags);
+        return new MatchMove(matches, newConfirmedFlags, moveType);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MatchMove rebase(ScoreDirector<Assignment> destinationDirector) {
+        // Matches are looked up by id in the destination solution, flags are immutable
+        return new MatchMove(rebaseList(matches, destinationDirector), confirmedFlags, moveType);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getSimpleMoveTypeDescription() {
+        return moveType;
     }
 
     /**
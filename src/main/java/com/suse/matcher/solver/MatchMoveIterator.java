@@ -4,9 +4,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Random;
-import java.util.stream.Collectors;
 
 /**
  * Generates {@link MatchMove}s.
@@ -22,9 +20,6 @@ public class MatchMoveIterator implements Iterator<MatchMove> {
     /** Iterator over all matches. */
     private final Iterator<Match> iterator;
 
-    /** Map from id to {@link Match}. */
-    private final Map<Integer, Match> idMap;
-
     /**
      * Standard constructor.
      * @param assignmentIn a solution instance
@@ -37,9 +32,6 @@ public class MatchMoveIterator implements Iterator<MatchMove> {
         Collections.shuffle(orderedMatches, randomIn);
 
         iterator = orderedMatches.iterator();
-
-        idMap = orderedMatches.stream()
-            .collect(Collectors.toMap(match -> match.id, match -> match));
     }
 
     /** {@inheritDoc} */
@@ -65,15 +57,16 @@ public class MatchMoveIterator implements Iterator<MatchMove> {
 
         // also make sure any conflicting match is (flipped to) false
         if (newState) {
-            assignment.getConflictingMatchIds(match.id)
-                .map(id -> idMap.get(id))
-                .filter(conflict -> conflict.confirmed)
-                .forEach(conflict -> {
+            ConflictGraph conflicts = assignment.getConflictGraph();
+            for (int i = 0; i < conflicts.getDegree(match.id); i++) {
+                Match conflict = assignment.getMatchById(conflicts.getConflictingId(match.id, i));
+                if (conflict.confirmed) {
                     matches.add(conflict);
                     states.add(false);
-                });
+                }
+            }
         }
 
-        return new MatchMove(matches, states);
+        return new MatchMove(matches, states, MatchMoveIteratorFactory.class.getSimpleName());
     }
 }
@@ -0,0 +1,359 @@
+package com.suse.matcher.solver;
+
+import com.suse.matcher.facts.CentGroup;
+import com.suse.matcher.facts.ConfirmedMatchInPenaltyGroup;
+import com.suse.matcher.facts.InstalledProduct;
+import com.suse.matcher.facts.OneTwoPenalty;
+import com.suse.matcher.facts.Penalty;
+import com.suse.matcher.facts.PenaltyGroup;
+import com.suse.matcher.facts.PinnedMatch;
+import com.suse.matcher.facts.PotentialMatch;
+import com.suse.matcher.facts.Subscription;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
+import org.optaplanner.core.api.score.buildin.hardsoft.HardSoftScore;
+import org.optaplanner.core.impl.score.director.incremental.IncrementalScoreCalculator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Calculates the same score as Scores.drl, incrementally and without a rule engine.
+ *
+ * Every quantity a rule in Scores.drl depends on is precomputed per {@link Match} id when the
+ * working solution is reset. Confirming or unconfirming a Match then only updates counters in
+ * primitive arrays:
+ *   - soft score: covered installed products, pinned matches and bundle bonuses do not depend on
+ *     other Matches, so each Match contributes a constant amount when confirmed;
+ *   - hard score: subscription cents used by confirmed Matches are tracked per subscription, counting
+ *     each cent group once (as Penalty facts do) and 50 more cents for each penalty group with an odd
+ *     number of guests on a 1-2 subscription (as OneTwoPenalty facts do).
+ *
+ * Keep this class in sync with Scores.drl. In unit tests, scores are cross-checked against it.
+ */
+public class MatchScoreCalculator implements IncrementalScoreCalculator<Assignment> {
+
+    /** Soft score of each Match when confirmed, by Match id. */
+    private int[] matchSoftScores;
+
+    /** Offsets of each Match id's range in matchCentKeys. */
+    private int[] matchCentKeyOffsets;
+
+    /** Indexes of the (subscription, cent group) keys that each Match uses, grouped by Match id. */
+    private int[] matchCentKeys;
+
+    /** Offsets of each Match id's range in matchGuestKeys. */
+    private int[] matchGuestKeyOffsets;
+
+    /** Indexes of the (1-2 subscription, penalty group, guest) keys that each Match uses, grouped by Match id. */
+    private int[] matchGuestKeys;
+
+    /** Subscription index of each (subscription, cent group) key. */
+    private int[] centKeySubscriptions;
+
+    /** Cents used by each (subscription, cent group) key. */
+    private int[] centKeyCents;
+
+    /** Number of confirmed uses of each (subscription, cent group) key. */
+    private int[] centKeyCounts;
+
+    /** (1-2 subscription, penalty group) key index of each (1-2 subscription, penalty group, guest) key. */
+    private int[] guestKeyGroups;
+
+    /** Number of confirmed uses of each (1-2 subscription, penalty group, guest) key. */
+    private int[] guestKeyCounts;
+
+    /** Subscription index of each (1-2 subscription, penalty group) key. */
+    private int[] groupKeySubscriptions;
+
+    /** Number of guests with a confirmed Match in each (1-2 subscription, penalty group) key. */
+    private int[] groupKeyCounts;
+
+    /** Number of non-ignored subscription facts with each subscription index's id. */
+    private int[] subscriptionMultiplicities;
+
+    /** Cents available in each subscription. */
+    private int[] subscriptionAvailableCents;
+
+    /** Cents used in each subscription. */
+    private int[] subscriptionUsedCents;
+
+    /** Current hard score. */
+    private int hardScore;
+
+    /** Current soft score. */
+    private int softScore;
+
+    /** {@inheritDoc} */
+    @Override
+    public void resetWorkingSolution(Assignment assignment) {
+        int idBound = assignment.getMatches().stream().mapToInt(m -> m.id + 1).max().orElse(0);
+        boolean[] matchExists = new boolean[idBound];
+        assignment.getMatches().forEach(m -> matchExists[m.id] = true);
+
+        // index non-ignored subscriptions, which are the only ones affected by hard constraints
+        Map<Long, Integer> subscriptionIndexes = new HashMap<>();
+        Map<Long, Boolean> oneTwoSubscriptions = new HashMap<>();
+        List<Integer> availableCents = new ArrayList<>();
+        List<Integer> multiplicities = new ArrayList<>();
+        assignment.getProblemFactStream(Subscription.class)
+            .filter(s -> Boolean.FALSE.equals(s.ignored))
+            .forEach(s -> {
+                Integer index = subscriptionIndexes.get(s.id);
+                if (index == null) {
+                    index = availableCents.size();
+                    subscriptionIndexes.put(s.id, index);
+                    availableCents.add(s.quantity == Integer.MAX_VALUE ? Integer.MAX_VALUE : s.quantity * 100);
+                    multiplicities.add(0);
+                }
+                multiplicities.set(index, multiplicities.get(index) + 1);
+                oneTwoSubscriptions.merge(s.id, s.policy == Subscription.Policy.ONE_TWO, Boolean::logicalOr);
+            });
+
+        // count facts that soft constraints join with
+        Map<Integer, List<Integer>> centsByCentGroup = assignment.getProblemFactStream(CentGroup.class)
+            .collect(Collectors.groupingBy(CentGroup::getId, Collectors.mapping(CentGroup::getCents, Collectors.toList())));
+        Map<Long, List<Integer>> penaltyGroupsByGuest = assignment.getProblemFactStream(PenaltyGroup.class)
+            .filter(g -> g.getGuestId() != null)
+            .distinct()
+            .collect(Collectors.groupingBy(PenaltyGroup::getGuestId, Collectors.mapping(PenaltyGroup::getId, Collectors.toList())));
+        Map<InstalledProduct, Long> installedProductCounts = assignment.getProblemFactStream(InstalledProduct.class)
+            .collect(Collectors.groupingBy(p -> p, Collectors.counting()));
+        Map<PinnedMatch, Long> pinnedMatchCounts = assignment.getProblemFactStream(PinnedMatch.class)
+            .collect(Collectors.groupingBy(p -> p, Collectors.counting()));
+
+        Collection<PotentialMatch> potentialMatches = assignment.getProblemFacts(PotentialMatch.class);
+
+        // a confirmed Match gets a bundle bonus for each other Match covering its system with the same cent group
+        Map<Pair<Long, Integer>, Long> bundleCounts = new HashMap<>();
+        Map<Triple<Long, Integer, Integer>, Long> bundleCountsByGroup = new HashMap<>();
+        potentialMatches.stream()
+            .filter(p -> p.groupId < idBound && matchExists[p.groupId])
+            .forEach(p -> {
+                bundleCounts.merge(Pair.of(p.systemId, p.centGroupId), 1L, Long::sum);
+                bundleCountsByGroup.merge(Triple.of(p.systemId, p.centGroupId, p.groupId), 1L, Long::sum);
+            });
+
+        // precompute the contribution of each Match
+        Map<Penalty, Integer> centKeyIndexes = new HashMap<>();
+        Map<ConfirmedMatchInPenaltyGroup, Integer> guestKeyIndexes = new HashMap<>();
+        Map<OneTwoPenalty, Integer> groupKeyIndexes = new HashMap<>();
+        List<Integer> centKeySubscriptionList = new ArrayList<>();
+        List<Integer> centKeyCentList = new ArrayList<>();
+        List<Integer> guestKeyGroupList = new ArrayList<>();
+        List<Integer> groupKeySubscriptionList = new ArrayList<>();
+
+        matchSoftScores = new int[idBound];
+        List<List<Integer>> centKeysByMatch = new ArrayList<>(idBound);
+        List<List<Integer>> guestKeysByMatch = new ArrayList<>(idBound);
+        for (int i = 0; i < idBound; i++) {
+            centKeysByMatch.add(new ArrayList<>(0));
+            guestKeysByMatch.add(new ArrayList<>(0));
+        }
+
+        for (PotentialMatch p : potentialMatches) {
+            if (p.groupId >= idBound || !matchExists[p.groupId]) {
+                continue;
+            }
+
+            // soft constraints: maximizeCoveredInstallations, maximizePinnedMatches, preferBundledMatches
+            Pair<Long, Integer> bundle = Pair.of(p.systemId, p.centGroupId);
+            long bundledMatches = bundleCounts.get(bundle) -
+                bundleCountsByGroup.get(Triple.of(p.systemId, p.centGroupId, p.groupId));
+            matchSoftScores[p.groupId] += (int) (
+                100 * installedProductCounts.getOrDefault(new InstalledProduct(p.systemId, p.productId), 0L) +
+                10 * pinnedMatchCounts.getOrDefault(new PinnedMatch(p.systemId, p.subscriptionId), 0L) +
+                bundledMatches
+            );
+
+            // hard constraint: dontExceedSubscriptionCount
+            Integer subscriptionIndex = subscriptionIndexes.get(p.subscriptionId);
+            if (subscriptionIndex == null) {
+                continue;
+            }
+
+            for (int cents : centsByCentGroup.getOrDefault(p.centGroupId, List.of())) {
+                Integer key = centKeyIndexes.computeIfAbsent(new Penalty(p.subscriptionId, -p.centGroupId, cents), k -> {
+                    centKeySubscriptionList.add(subscriptionIndex);
+                    centKeyCentList.add(cents);
+                    return centKeySubscriptionList.size() - 1;
+                });
+                centKeysByMatch.get(p.groupId).add(key);
+            }
+
+            if (oneTwoSubscriptions.get(p.subscriptionId)) {
+                for (int penaltyGroupId : penaltyGroupsByGuest.getOrDefault(p.systemId, List.of())) {
+                    Integer groupKey = groupKeyIndexes.computeIfAbsent(new OneTwoPenalty(p.subscriptionId, penaltyGroupId, 50), k -> {
+                        groupKeySubscriptionList.add(subscriptionIndex);
+                        return groupKeySubscriptionList.size() - 1;
+                    });
+                    Integer key = guestKeyIndexes.computeIfAbsent(
+                        new ConfirmedMatchInPenaltyGroup(p.subscriptionId, penaltyGroupId, p.systemId), k -> {
+                            guestKeyGroupList.add(groupKey);
+                            return guestKeyGroupList.size() - 1;
+                        });
+                    guestKeysByMatch.get(p.groupId).add(key);
+                }
+            }
+        }
+
+        matchCentKeyOffsets = new int[idBound + 1];
+        matchCentKeys = flatten(centKeysByMatch, matchCentKeyOffsets);
+        matchGuestKeyOffsets = new int[idBound + 1];
+        matchGuestKeys = flatten(guestKeysByMatch, matchGuestKeyOffsets);
+
+        centKeySubscriptions = toArray(centKeySubscriptionList);
+        centKeyCents = toArray(centKeyCentList);
+        centKeyCounts = new int[centKeySubscriptions.length];
+        guestKeyGroups = toArray(guestKeyGroupList);
+        guestKeyCounts = new int[guestKeyGroups.length];
+        groupKeySubscriptions = toArray(groupKeySubscriptionList);
+        groupKeyCounts = new int[groupKeySubscriptions.length];
+        subscriptionMultiplicities = toArray(multiplicities);
+        subscriptionAvailableCents = toArray(availableCents);
+        subscriptionUsedCents = new int[subscriptionAvailableCents.length];
+
+        hardScore = 0;
+        softScore = 0;
+        for (Match match : assignment.getMatches()) {
+            if (match.confirmed == Boolean.TRUE) {
+                confirm(match.id);
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void beforeEntityAdded(Object entity) {
+        // Matches are never added
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void afterEntityAdded(Object entity) {
+        // Matches are never added
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void beforeVariableChanged(Object entity, String variableName) {
+        Match match = (Match) entity;
+        if (match.confirmed == Boolean.TRUE) {
+            unconfirm(match.id);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void afterVariableChanged(Object entity, String variableName) {
+        Match match = (Match) entity;
+        if (match.confirmed == Boolean.TRUE) {
+            confirm(match.id);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void beforeEntityRemoved(Object entity) {
+        // Matches are never removed
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void afterEntityRemoved(Object entity) {
+        // Matches are never removed
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public HardSoftScore calculateScore() {
+        return HardSoftScore.of(hardScore, softScore);
+    }
+
+    /**
+     * Returns the soft score a Match adds when confirmed, which does not depend on other Matches.
+     *
+     * @param matchId a {@link Match} id in the working solution
+     * @return the soft score
+     */
+    int getMatchSoftScore(int matchId) {
+        return matchSoftScores[matchId];
+    }
+
+    private void confirm(int matchId) {
+        softScore += matchSoftScores[matchId];
+        for (int i = matchCentKeyOffsets[matchId]; i < matchCentKeyOffsets[matchId + 1]; i++) {
+            int key = matchCentKeys[i];
+            if (centKeyCounts[key]++ == 0) {
+                addUsedCents(centKeySubscriptions[key], centKeyCents[key]);
+            }
+        }
+        for (int i = matchGuestKeyOffsets[matchId]; i < matchGuestKeyOffsets[matchId + 1]; i++) {
+            int key = matchGuestKeys[i];
+            if (guestKeyCounts[key]++ == 0) {
+                toggleOneTwoPenalty(guestKeyGroups[key], 1);
+            }
+        }
+    }
+
+    private void unconfirm(int matchId) {
+        softScore -= matchSoftScores[matchId];
+        for (int i = matchCentKeyOffsets[matchId]; i < matchCentKeyOffsets[matchId + 1]; i++) {
+            int key = matchCentKeys[i];
+            if (--centKeyCounts[key] == 0) {
+                addUsedCents(centKeySubscriptions[key], -centKeyCents[key]);
+            }
+        }
+        for (int i = matchGuestKeyOffsets[matchId]; i < matchGuestKeyOffsets[matchId + 1]; i++) {
+            int key = matchGuestKeys[i];
+            if (--guestKeyCounts[key] == 0) {
+                toggleOneTwoPenalty(guestKeyGroups[key], -1);
+            }
+        }
+    }
+
+    /**
+     * Changes the number of guests in a penalty group, charging 50 cents if it is odd.
+     */
+    private void toggleOneTwoPenalty(int groupKey, int delta) {
+        groupKeyCounts[groupKey] += delta;
+        addUsedCents(groupKeySubscriptions[groupKey], groupKeyCounts[groupKey] % 2 == 1 ? 50 : -50);
+    }
+
+    private void addUsedCents(int subscriptionIndex, int cents) {
+        hardScore -= getHardScore(subscriptionIndex);
+        subscriptionUsedCents[subscriptionIndex] += cents;
+        hardScore += getHardScore(subscriptionIndex);
+    }
+
+    private int getHardScore(int subscriptionIndex) {
+        int availableCents = subscriptionAvailableCents[subscriptionIndex];
+        int totalUsedCents = subscriptionUsedCents[subscriptionIndex];
+        return subscriptionMultiplicities[subscriptionIndex] * ((availableCents - totalUsedCents) >= 0 ? 0 :
+            // limit penalty to 10 points
+            -10 + availableCents * 9 / totalUsedCents
+        );
+    }
+
+    private static int[] flatten(List<List<Integer>> lists, int[] offsets) {
+        int size = 0;
+        for (int i = 0; i < lists.size(); i++) {
+            offsets[i] = size;
+            size += lists.get(i).size();
+        }
+        offsets[lists.size()] = size;
+        return lists.stream()
+            .flatMap(List::stream)
+            .mapToInt(Integer::intValue)
+            .toArray();
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        return list.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
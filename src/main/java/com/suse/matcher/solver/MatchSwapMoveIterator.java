@@ -46,9 +46,6 @@ public class MatchSwapMoveIterator implements Iterator<MatchMove> {
     /** Iterator over all matches. */
     private final Iterator<Pair<PotentialMatch, PotentialMatch>> iterator;
 
-    /** Map from id to {@link Match}. */
-    private final Map<Integer, Match> idMap;
-
     /**
      * Standard constructor.
      * @param assignmentIn a solution instance
@@ -57,14 +54,6 @@ public class MatchSwapMoveIterator implements Iterator<MatchMove> {
     public MatchSwapMoveIterator(Assignment assignmentIn, Random randomIn) {
         assignment = assignmentIn;
 
-        List<Match> orderedMatches = new ArrayList<>(assignment.getMatches());
-
-        idMap = orderedMatches.stream()
-                .collect(Collectors.toMap(
-                        match -> match.id,
-                        match -> match
-                ));
-
         // subscription id -> confirmed/not confirmed -> shuffled list of matches
         Map<Long, Map<Boolean, List<PotentialMatch>>> subscriptionMatches = assignmentIn.getSortedPotentialMatchesCache()
                 .stream()
@@ -72,7 +61,7 @@ public class MatchSwapMoveIterator implements Iterator<MatchMove> {
                     pm -> pm.subscriptionId,
                     TreeMap::new,
                     Collectors.groupingBy(
-                        pm -> idMap.get(pm.groupId).confirmed,
+                        pm -> assignment.getMatchById(pm.groupId).confirmed,
                         TreeMap::new,
                         CollectionUtils.toShuffledList(randomIn)
                     )
@@ -103,8 +92,8 @@ public class MatchSwapMoveIterator implements Iterator<MatchMove> {
 
         // pick the matches to change
         Pair<PotentialMatch, PotentialMatch> next = iterator.next();
-        Match match1 = idMap.get(next.getLeft().groupId);
-        Match match2 = idMap.get(next.getRight().groupId);
+        Match match1 = assignment.getMatchById(next.getLeft().groupId);
+        Match match2 = assignment.getMatchById(next.getRight().groupId);
 
         // swap their "confirmed" flag
         matches.add(match1);
@@ -114,26 +103,24 @@ public class MatchSwapMoveIterator implements Iterator<MatchMove> {
 
         // also make sure any conflicting match is (flipped to) false
         if (BooleanUtils.isTrue(match2.confirmed)) {
-            assignment.getConflictingMatchIds(match1.id)
-                    .map(id -> idMap.get(id))
-                    .filter(conflict -> conflict.confirmed)
-                    .forEach(conflict -> {
-                        matches.add(conflict);
-                        states.add(false);
-                    });
+            addConfirmedConflicts(match1, matches, states);
         }
 
         if (BooleanUtils.isTrue(match1.confirmed)) {
-            assignment.getConflictingMatchIds(match2.id)
-                    .map(id -> idMap.get(id))
-                    .filter(conflict -> conflict.confirmed)
-                    .forEach(conflict -> {
-                        matches.add(conflict);
-                        states.add(false);
-                    });
+            addConfirmedConflicts(match2, matches, states);
         }
 
-        return new MatchMove(matches, states);
+        return new MatchMove(matches, states, MatchSwapMoveIteratorFactory.class.getSimpleName());
     }
 
+    private void addConfirmedConflicts(Match match, List<Match> matches, List<Boolean> states) {
+        ConflictGraph conflicts = assignment.getConflictGraph();
+        for (int i = 0; i < conflicts.getDegree(match.id); i++) {
+            Match conflict = assignment.getMatchById(conflicts.getConflictingId(match.id, i));
+            if (conflict.confirmed) {
+                matches.add(conflict);
+                states.add(false);
+            }
+        }
+    }
 }
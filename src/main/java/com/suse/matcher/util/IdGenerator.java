@@ -0,0 +1,107 @@
+package com.suse.matcher.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Generates sequential ids which are unique to some data: equal input data always results in the same id.
+ *
+ * One instance is meant to be used for a single matching run, so that ids do not leak across runs and
+ * concurrent runs do not interfere. Instances are not thread-safe.
+ */
+public class IdGenerator {
+
+    /** Map from data to ids. */
+    private final Map<Key, Integer> ids = new HashMap<>();
+
+    /**
+     * Returns the id corresponding to a pair of numbers.
+     *
+     * @param first the first number
+     * @param second the second number
+     * @return the id
+     */
+    public int generateId(long first, long second) {
+        return getId(new Key(null, 2, first, second, 0L));
+    }
+
+    /**
+     * Returns the id corresponding to a triple of numbers.
+     *
+     * @param first the first number
+     * @param second the second number
+     * @param third the third number
+     * @return the id
+     */
+    public int generateId(long first, long second, long third) {
+        return getId(new Key(null, 3, first, second, third));
+    }
+
+    /**
+     * Returns the id corresponding to a tagged number.
+     *
+     * @param tag a string identifying the kind of data, may be null
+     * @param value the number
+     * @return the id
+     */
+    public int generateId(String tag, long value) {
+        return getId(new Key(tag, 1, value, 0L, 0L));
+    }
+
+    /**
+     * Returns the id corresponding to a tagged pair of numbers.
+     *
+     * @param tag a string identifying the kind of data
+     * @param first the first number
+     * @param second the second number
+     * @return the id
+     */
+    public int generateId(String tag, long first, long second) {
+        return getId(new Key(tag, 2, first, second, 0L));
+    }
+
+    private int getId(Key key) {
+        return ids.computeIfAbsent(key, k -> ids.size());
+    }
+
+    /**
+     * Data an id is generated from: an optional tag followed by up to three numbers.
+     */
+    private static final class Key {
+        private final String tag;
+        private final int size;
+        private final long first;
+        private final long second;
+        private final long third;
+
+        Key(String tagIn, int sizeIn, long firstIn, long secondIn, long thirdIn) {
+            tag = tagIn;
+            size = sizeIn;
+            first = firstIn;
+            second = secondIn;
+            third = thirdIn;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int hashCode() {
+            int result = Objects.hashCode(tag);
+            result = 31 * result + size;
+            result = 31 * result + Long.hashCode(first);
+            result = 31 * result + Long.hashCode(second);
+            return 31 * result + Long.hashCode(third);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean equals(Object objIn) {
+            if (!(objIn instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) objIn;
+            return size == other.size && first == other.first && second == other.second && third == other.third &&
+                    Objects.equals(tag, other.tag);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.suse.matcher;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.suse.matcher.json.JsonInput;
+import com.suse.matcher.json.JsonMatch;
+import com.suse.matcher.json.JsonSystem;
+import com.suse.matcher.solver.Assignment;
+
+import org.apache.logging.log4j.core.LoggerContext;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Tests {@link IncrementalMatcher}.
+ */
+class IncrementalMatcherTest {
+
+    private static LoggerContext loggerContext = null;
+
+    // Utility to convert from/to JSON
+    private static final JsonIO JSON_IO = new JsonIO();
+
+    @BeforeAll
+    static void initLoggerContext() {
+        loggerContext = Log4J.initialize(Optional.empty(), Optional.empty());
+    }
+
+    @AfterAll
+    static void closeLoggerContext() {
+        if (loggerContext != null) {
+            loggerContext.close();
+        }
+    }
+
+    /**
+     * Tests that adding a system back gives a solution as good as matching all systems at once.
+     * Solutions with the same score can differ, so they are not compared.
+     */
+    @Test
+    void testAddSystem() throws IOException {
+        JsonInput input = JSON_IO.loadInput(getResourceAsString("scenarios/39/input.json"));
+        Assignment expected = new Matcher(true).match(input);
+        JsonSystem system = input.getSystems().get(0);
+
+        IncrementalMatcher matcher = new IncrementalMatcher(new Matcher(true),
+                new InputDelta().removeSystem(system.getId()).applyTo(input));
+        assertTrue(getMatches(matcher.getAssignment()).stream().noneMatch(m -> m.getSystemId().equals(system.getId())),
+                "Removed system is matched");
+
+        Assignment assignment = matcher.update(new InputDelta().addSystem(system));
+        assertEquals(getMatches(expected).size(), getMatches(assignment).size(), "Some matches were lost");
+        assertEquals(expected.getScore(), assignment.getScore(), "Incremental solution is worse");
+        assertEquals(input.getSystems().size(), matcher.getInput().getSystems().size());
+    }
+
+    /**
+     * Tests that removed subscriptions are not matched anymore.
+     */
+    @Test
+    void testRemoveSubscription() throws IOException {
+        JsonInput input = JSON_IO.loadInput(getResourceAsString("scenarios/39/input.json"));
+        IncrementalMatcher matcher = new IncrementalMatcher(new Matcher(true), input);
+        long subscriptionId = getMatches(matcher.getAssignment()).get(0).getSubscriptionId();
+
+        Assignment assignment = matcher.update(new InputDelta().removeSubscription(subscriptionId));
+        assertTrue(getMatches(assignment).stream().noneMatch(m -> m.getSubscriptionId().equals(subscriptionId)),
+                "Removed subscription is matched");
+        assertEquals(input.getSubscriptions().size() - 1, matcher.getInput().getSubscriptions().size());
+    }
+
+    /**
+     * Tests that an update does less work than matching from scratch: the solver takes fewer steps, and
+     * none in local search if the delta only removes elements.
+     */
+    @Test
+    void testUpdateSteps() throws IOException {
+        JsonInput input = JSON_IO.loadInput(getResourceAsString("scenarios/39/input.json"));
+        SolverOptions options = new SolverOptions();
+        options.setScoreCalculation(SolverOptions.ScoreCalculation.INCREMENTAL);
+        options.setTelemetry(true);
+        JsonSystem system = input.getSystems().get(0);
+
+        IncrementalMatcher matcher = new IncrementalMatcher(new Matcher(true, options), input);
+        int fullSteps = getSteps(matcher.getResult());
+
+        matcher.update(new InputDelta().removeSystem(system.getId()));
+        assertTrue(matcher.getResult().getTelemetries().stream()
+                .flatMap(t -> t.getPhases().stream())
+                .noneMatch(p -> p.getType().equals("localSearch")), "Local search ran on removal");
+
+        matcher.update(new InputDelta().addSystem(system));
+        assertTrue(getSteps(matcher.getResult()) < fullSteps, "Update took as many steps as a full match");
+    }
+
+    /**
+     * Tests that adding a pinned match replaces the one of the same system and subscription.
+     */
+    @Test
+    void testReplacePinnedMatch() throws IOException {
+        JsonInput input = JSON_IO.loadInput(getResourceAsString("scenarios/39/input.json"));
+        JsonSystem system = input.getSystems().get(0);
+        long subscriptionId = input.getSubscriptions().get(0).getId();
+
+        JsonInput pinned = new InputDelta()
+                .addPinnedMatch(new JsonMatch(system.getId(), subscriptionId, null, 100))
+                .applyTo(input);
+        JsonInput repinned = new InputDelta()
+                .addPinnedMatch(new JsonMatch(system.getId(), subscriptionId, null, 200))
+                .applyTo(pinned);
+
+        assertEquals(pinned.getPinnedMatches().size(), repinned.getPinnedMatches().size(), "Pinned match duplicated");
+        assertTrue(repinned.getPinnedMatches().stream().anyMatch(m -> m.getSystemId().equals(system.getId()) &&
+                m.getSubscriptionId().equals(subscriptionId) && m.getCents().equals(200)), "Pinned match not replaced");
+    }
+
+    /**
+     * Tests that empty deltas do not cause matching again.
+     */
+    @Test
+    void testEmptyUpdate() throws IOException {
+        JsonInput input = JSON_IO.loadInput(getResourceAsString("scenarios/1/input.json"));
+        IncrementalMatcher matcher = new IncrementalMatcher(new Matcher(true), input);
+
+        assertSame(matcher.getAssignment(), matcher.update(new InputDelta()));
+    }
+
+    private static int getSteps(RunResult result) {
+        return result.getTelemetries().stream().mapToInt(SolverTelemetry::getSteps).sum();
+    }
+
+    private static List<JsonMatch> getMatches(Assignment assignment) {
+        return FactConverter.getMatches(assignment);
+    }
+
+    private static String getResourceAsString(String name) throws IOException {
+        try (InputStream is = IncrementalMatcherTest.class.getResourceAsStream(name)) {
+            return new String(is.readAllBytes(), Charset.defaultCharset());
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package com.suse.matcher;
+
+import com.suse.matcher.facts.Subscription;
+import com.suse.matcher.json.JsonInput;
+import com.suse.matcher.json.JsonMatch;
+import com.suse.matcher.json.JsonProduct;
+import com.suse.matcher.json.JsonSubscription;
+import com.suse.matcher.json.JsonSystem;
+import com.suse.matcher.json.JsonVirtualizationGroup;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Generates synthetic input data of arbitrary size, to test and benchmark the matcher at scale.
+ *
+ * Physical hosts run guests, which are grouped in virtualization groups by host. Every system has a base
+ * product installed, and possibly some add-on and free products. Subscriptions have real part numbers of
+ * each {@link Subscription.Policy}, taken from the part number catalog: they cover base products or,
+ * for {@link Subscription.Policy#INHERITED_VIRTUALIZATION}, add-on products. Pinned matches pair systems
+ * with subscriptions covering one of their products.
+ *
+ * All random choices come from the seed, so the same seed and counts always generate the same input data.
+ */
+public class InputGenerator {
+
+    /** Part number catalog, see {@link PartNumberCatalog}. */
+    private static final String PART_NUMBERS = "/com/suse/matcher/rules/PartNumbers.csv";
+
+    /** Date and time of generated matches. */
+    private static final Date TIMESTAMP = Date.from(Instant.parse("2024-01-01T00:00:00Z"));
+
+    /** CPU counts of physical hosts, more common ones being repeated. */
+    private static final int[] HOST_CPUS = {1, 2, 2, 2, 4, 4, 8, 16};
+
+    /** Source of all random choices. */
+    private final Random random;
+
+    /** Number of physical hosts. */
+    private int hostCount = 10;
+
+    /** Number of guests of each host. */
+    private int guestsPerHost = 4;
+
+    /** Number of virtualization groups. */
+    private int virtualizationGroupCount = 1;
+
+    /** Number of base products. */
+    private int baseProductCount = 4;
+
+    /** Number of add-on products. */
+    private int addonProductCount = 4;
+
+    /** Number of free products. */
+    private int freeProductCount = 2;
+
+    /** Number of subscriptions by policy. */
+    private final Map<Subscription.Policy, Integer> subscriptionCounts = new EnumMap<>(Subscription.Policy.class);
+
+    /** Number of pinned matches. */
+    private int pinnedMatchCount = 1;
+
+    /**
+     * Instantiates a new generator with small default counts.
+     *
+     * @param seed the seed of random choices
+     */
+    public InputGenerator(long seed) {
+        random = new Random(seed);
+        for (Subscription.Policy policy : Subscription.Policy.values()) {
+            subscriptionCounts.put(policy, 2);
+        }
+    }
+
+    /**
+     * Instantiates a new generator with counts scaled to a number of physical hosts, in proportions
+     * similar to those of typical inputs.
+     *
+     * @param seed the seed of random choices
+     * @param hostCountIn the number of physical hosts
+     * @return the generator
+     */
+    public static InputGenerator withHosts(long seed, int hostCountIn) {
+        InputGenerator generator = new InputGenerator(seed)
+            .setHostCount(hostCountIn)
+            .setGuestsPerHost(4)
+            .setVirtualizationGroupCount(Math.max(1, hostCountIn / 25))
+            .setBaseProductCount(Math.max(4, hostCountIn / 10))
+            .setAddonProductCount(Math.max(4, hostCountIn / 10))
+            .setFreeProductCount(Math.max(2, hostCountIn / 50))
+            .setPinnedMatchCount(hostCountIn / 100);
+        for (Subscription.Policy policy : Subscription.Policy.values()) {
+            generator.setSubscriptionCount(policy, Math.max(1, hostCountIn / 10));
+        }
+        return generator;
+    }
+
+    /**
+     * Sets the number of physical hosts.
+     *
+     * @param hostCountIn the number of hosts
+     * @return this generator
+     */
+    public InputGenerator setHostCount(int hostCountIn) {
+        hostCount = hostCountIn;
+        return this;
+    }
+
+    /**
+     * Sets the number of guests of each host.
+     *
+     * @param guestsPerHostIn the number of guests, 0 for no virtualization
+     * @return this generator
+     */
+    public InputGenerator setGuestsPerHost(int guestsPerHostIn) {
+        guestsPerHost = guestsPerHostIn;
+        return this;
+    }
+
+    /**
+     * Sets the number of virtualization groups.
+     *
+     * @param virtualizationGroupCountIn the number of groups
+     * @return this generator
+     */
+    public InputGenerator setVirtualizationGroupCount(int virtualizationGroupCountIn) {
+        virtualizationGroupCount = virtualizationGroupCountIn;
+        return this;
+    }
+
+    /**
+     * Sets the number of base products.
+     *
+     * @param baseProductCountIn the number of products, at least 1
+     * @return this generator
+     */
+    public InputGenerator setBaseProductCount(int baseProductCountIn) {
+        baseProductCount = baseProductCountIn;
+        return this;
+    }
+
+    /**
+     * Sets the number of add-on products.
+     *
+     * @param addonProductCountIn the number of products
+     * @return this generator
+     */
+    public InputGenerator setAddonProductCount(int addonProductCountIn) {
+        addonProductCount = addonProductCountIn;
+        return this;
+    }
+
+    /**
+     * Sets the number of free products.
+     *
+     * @param freeProductCountIn the number of products
+     * @return this generator
+     */
+    public InputGenerator setFreeProductCount(int freeProductCountIn) {
+        freeProductCount = freeProductCountIn;
+        return this;
+    }
+
+    /**
+     * Sets the number of subscriptions with a policy.
+     *
+     * @param policy the policy
+     * @param count the number of subscriptions
+     * @return this generator
+     */
+    public InputGenerator setSubscriptionCount(Subscription.Policy policy, int count) {
+        subscriptionCounts.put(policy, count);
+        return this;
+    }
+
+    /**
+     * Sets the number of pinned matches. Fewer are generated if systems and subscriptions do not allow them.
+     *
+     * @param pinnedMatchCountIn the number of pinned matches
+     * @return this generator
+     */
+    public InputGenerator setPinnedMatchCount(int pinnedMatchCountIn) {
+        pinnedMatchCount = pinnedMatchCountIn;
+        return this;
+    }
+
+    /**
+     * Generates input data.
+     *
+     * @return the input data
+     */
+    public JsonInput generate() {
+        long nextId = 1;
+
+        List<JsonProduct> products = new ArrayList<>();
+        List<Long> baseProductIds = new ArrayList<>();
+        List<Long> addonProductIds = new ArrayList<>();
+        List<Long> freeProductIds = new ArrayList<>();
+        for (int i = 0; i < baseProductCount; i++) {
+            products.add(new JsonProduct(nextId, "Base Product " + i, "7261", false, true));
+            baseProductIds.add(nextId++);
+        }
+        for (int i = 0; i < addonProductCount; i++) {
+            products.add(new JsonProduct(nextId, "Add-on Product " + i, "ADDON-" + i, false, false));
+            addonProductIds.add(nextId++);
+        }
+        for (int i = 0; i < freeProductCount; i++) {
+            products.add(new JsonProduct(nextId, "Free Product " + i, null, true, false));
+            freeProductIds.add(nextId++);
+        }
+
+        List<JsonSystem> systems = new ArrayList<>();
+        List<Set<Long>> groupGuestIds = new ArrayList<>();
+        for (int i = 0; i < virtualizationGroupCount; i++) {
+            groupGuestIds.add(new TreeSet<>());
+        }
+        for (int h = 0; h < hostCount; h++) {
+            long hostId = nextId++;
+            Set<Long> guestIds = new TreeSet<>();
+            for (int g = 0; g < guestsPerHost; g++) {
+                long guestId = nextId++;
+                guestIds.add(guestId);
+                systems.add(new JsonSystem(guestId, "guest" + h + "-" + g, 1 + random.nextInt(2), false, false,
+                        new TreeSet<>(), generateInstalledProductIds(baseProductIds, addonProductIds, freeProductIds)));
+            }
+            if (virtualizationGroupCount > 0) {
+                groupGuestIds.get(h % virtualizationGroupCount).addAll(guestIds);
+            }
+            systems.add(new JsonSystem(hostId, "host" + h, HOST_CPUS[random.nextInt(HOST_CPUS.length)], true,
+                    !guestIds.isEmpty(), guestIds,
+                    generateInstalledProductIds(baseProductIds, addonProductIds, freeProductIds)));
+        }
+
+        List<JsonVirtualizationGroup> virtualizationGroups = new ArrayList<>();
+        for (int i = 0; i < virtualizationGroupCount; i++) {
+            virtualizationGroups.add(new JsonVirtualizationGroup(nextId++, "Cluster " + i,
+                    "virtual_host_manager_vmware", groupGuestIds.get(i)));
+        }
+
+        Map<Subscription.Policy, List<CSVRecord>> partNumbers = loadPartNumbers();
+        List<JsonSubscription> subscriptions = new ArrayList<>();
+        int totalSubscriptionCount = subscriptionCounts.values().stream().mapToInt(c -> c).sum();
+        int maxQuantity = Math.max(1, 2 * systems.size() / Math.max(1, totalSubscriptionCount));
+        for (Map.Entry<Subscription.Policy, Integer> entry : subscriptionCounts.entrySet()) {
+            List<CSVRecord> records = partNumbers.get(entry.getKey());
+            List<Long> coveredProductIds = entry.getKey() == Subscription.Policy.INHERITED_VIRTUALIZATION &&
+                    !addonProductIds.isEmpty() ? addonProductIds : baseProductIds;
+            for (int i = 0; i < entry.getValue(); i++) {
+                CSVRecord record = records.get(random.nextInt(records.size()));
+                Date start = Date.from(TIMESTAMP.toInstant().minus(1 + random.nextInt(365), ChronoUnit.DAYS));
+                Date end = Date.from(TIMESTAMP.toInstant().plus(1 + random.nextInt(3 * 365), ChronoUnit.DAYS));
+                subscriptions.add(new JsonSubscription(nextId++, record.get("part_number"), record.get("description"),
+                        1 + random.nextInt(maxQuantity), start, end, "synthetic",
+                        pick(coveredProductIds, 1 + random.nextInt(3))));
+            }
+        }
+
+        return new JsonInput(TIMESTAMP, systems, virtualizationGroups, products, subscriptions,
+                generatePinnedMatches(systems, subscriptions));
+    }
+
+    /**
+     * Picks a base product and possibly some add-on and free products.
+     */
+    private Set<Long> generateInstalledProductIds(List<Long> baseProductIds, List<Long> addonProductIds,
+            List<Long> freeProductIds) {
+        Set<Long> result = pick(baseProductIds, 1);
+        result.addAll(pick(addonProductIds, random.nextInt(3)));
+        result.addAll(pick(freeProductIds, random.nextInt(2)));
+        return result;
+    }
+
+    /**
+     * Pairs random systems with random subscriptions covering one of their products, avoiding duplicates.
+     */
+    private List<JsonMatch> generatePinnedMatches(List<JsonSystem> systems, List<JsonSubscription> subscriptions) {
+        Map<Long, List<JsonSystem>> systemsByProductId = new HashMap<>();
+        for (JsonSystem system : systems) {
+            for (Long productId : system.getProductIds()) {
+                systemsByProductId.computeIfAbsent(productId, k -> new ArrayList<>()).add(system);
+            }
+        }
+
+        List<JsonMatch> result = new ArrayList<>();
+        Set<Pair<Long, Long>> pinned = new HashSet<>();
+        // give up after a bounded number of attempts, in case few pairs are possible
+        for (int attempt = 0; result.size() < pinnedMatchCount && attempt < 10 * pinnedMatchCount; attempt++) {
+            JsonSubscription subscription = subscriptions.get(random.nextInt(subscriptions.size()));
+            List<Long> productIds = new ArrayList<>(subscription.getProductIds());
+            List<JsonSystem> candidates = systemsByProductId.getOrDefault(
+                    productIds.get(random.nextInt(productIds.size())), List.of());
+            if (candidates.isEmpty()) {
+                continue;
+            }
+            JsonSystem system = candidates.get(random.nextInt(candidates.size()));
+            if (pinned.add(Pair.of(system.getId(), subscription.getId()))) {
+                result.add(new JsonMatch(system.getId(), subscription.getId(), null, null));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Picks up to count distinct random elements.
+     */
+    private Set<Long> pick(List<Long> ids, int count) {
+        Set<Long> result = new TreeSet<>();
+        for (int i = 0; i < count && !ids.isEmpty(); i++) {
+            result.add(ids.get(random.nextInt(ids.size())));
+        }
+        return result;
+    }
+
+    /**
+     * Reads part numbers of the catalog, by policy, in catalog order.
+     */
+    private static Map<Subscription.Policy, List<CSVRecord>> loadPartNumbers() {
+        Map<Subscription.Policy, List<CSVRecord>> result = new EnumMap<>(Subscription.Policy.class);
+        try (Reader reader = new InputStreamReader(InputGenerator.class.getResourceAsStream(PART_NUMBERS),
+                StandardCharsets.UTF_8);
+             CSVParser parser = CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(reader)) {
+            for (CSVRecord record : parser) {
+                result.computeIfAbsent(Subscription.Policy.valueOf(record.get("policy")), k -> new ArrayList<>())
+                    .add(record);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return result;
+    }
+}
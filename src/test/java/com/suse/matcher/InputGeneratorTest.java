@@ -0,0 +1,78 @@
+package com.suse.matcher;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.suse.matcher.facts.Subscription;
+import com.suse.matcher.json.JsonInput;
+import com.suse.matcher.solver.Assignment;
+
+import org.apache.logging.log4j.core.LoggerContext;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+/**
+ * Tests {@link InputGenerator}.
+ */
+class InputGeneratorTest {
+
+    private static LoggerContext loggerContext = null;
+
+    // Utility to convert from/to JSON
+    private static final JsonIO JSON_IO = new JsonIO();
+
+    @BeforeAll
+    static void initLoggerContext() {
+        loggerContext = Log4J.initialize(Optional.empty(), Optional.empty());
+    }
+
+    @AfterAll
+    static void closeLoggerContext() {
+        if (loggerContext != null) {
+            loggerContext.close();
+        }
+    }
+
+    /**
+     * Tests that the same seed generates the same input data, and a different one different data.
+     * Input data is also checked to survive a JSON round trip, as benchmarks read it back from JSON.
+     */
+    @Test
+    void testSeed() {
+        String input = JSON_IO.toJson(InputGenerator.withHosts(42, 50).generate());
+
+        assertEquals(input, JSON_IO.toJson(InputGenerator.withHosts(42, 50).generate()));
+        assertNotEquals(input, JSON_IO.toJson(InputGenerator.withHosts(43, 50).generate()));
+        assertEquals(input, JSON_IO.toJson(JSON_IO.loadInput(input)));
+    }
+
+    /**
+     * Tests that generated input data has the requested counts and can be matched.
+     */
+    @Test
+    void testMatch() {
+        InputGenerator generator = new InputGenerator(1)
+            .setHostCount(5)
+            .setGuestsPerHost(3)
+            .setVirtualizationGroupCount(2)
+            .setPinnedMatchCount(2);
+        for (Subscription.Policy policy : Subscription.Policy.values()) {
+            generator.setSubscriptionCount(policy, 1);
+        }
+        JsonInput input = generator.generate();
+        assertEquals(20, input.getSystems().size());
+        assertEquals(2, input.getVirtualizationGroups().size());
+        assertEquals(10, input.getProducts().size());
+        assertEquals(Subscription.Policy.values().length, input.getSubscriptions().size());
+        assertEquals(2, input.getPinnedMatches().size());
+
+        Assignment assignment = new Matcher(true).match(input);
+        assertTrue(assignment.getMatches().stream().anyMatch(m -> Boolean.TRUE.equals(m.confirmed)), "No match confirmed");
+        assertFalse(assignment.getMatches().stream().anyMatch(m -> m.confirmed == null), "Some matches were not evaluated");
+    }
+}
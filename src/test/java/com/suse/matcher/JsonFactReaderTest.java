@@ -0,0 +1,58 @@
+package com.suse.matcher;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.suse.matcher.util.IdGenerator;
+
+import com.google.gson.JsonSyntaxException;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests {@link JsonFactReader}.
+ */
+class JsonFactReaderTest {
+
+    // Utility to convert from/to JSON
+    private static final JsonIO JSON_IO = new JsonIO();
+
+    /**
+     * Tests that facts read from JSON are the same as those converted from input objects.
+     */
+    @DisplayName("Read facts from scenario data")
+    @ParameterizedTest(name = "{1}")
+    @MethodSource("com.suse.matcher.MatcherScenariosTest#listScenarios")
+    void testScenario(int scenarioNumber, String description) throws IOException {
+        String input;
+        try (InputStream is = getClass().getResourceAsStream("scenarios/" + scenarioNumber + "/input.json")) {
+            input = new String(is.readAllBytes(), Charset.defaultCharset());
+        }
+
+        List<Object> expected = new ArrayList<>(FactConverter.convertToFacts(JSON_IO.loadInput(input), new IdGenerator()));
+        List<Object> actual = new ArrayList<>(JSON_IO.loadFacts(new StringReader(input), new IdGenerator()));
+
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * Tests that malformed input is reported as a syntax error.
+     */
+    @Test
+    void testInvalidInput() {
+        assertThrows(JsonSyntaxException.class, () -> JSON_IO.loadFacts(new StringReader(""), new IdGenerator()));
+        assertThrows(JsonSyntaxException.class, () -> JSON_IO.loadFacts(new StringReader("{ \"systems\": {"), new IdGenerator()));
+        assertThrows(JsonSyntaxException.class, () -> JSON_IO.loadFacts(new StringReader("{ \"systems\": 1 }"), new IdGenerator()));
+        assertThrows(JsonSyntaxException.class, () -> JSON_IO.loadFacts(new StringReader("{} {}"), new IdGenerator()));
+    }
+}
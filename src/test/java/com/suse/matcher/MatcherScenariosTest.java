@@ -7,16 +7,22 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import com.suse.matcher.json.JsonInput;
+import com.suse.matcher.json.JsonMatch;
 import com.suse.matcher.json.JsonOutput;
 import com.suse.matcher.solver.Assignment;
+import com.suse.matcher.solver.MatchScoreCalculator;
 
+import com.google.gson.JsonParser;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.core.LoggerContext;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
-import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -25,14 +31,17 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.URL;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -58,6 +67,15 @@ class MatcherScenariosTest {
     // Utility to convert from/to JSON
     private static final JsonIO JSON_IO = new JsonIO();
 
+    // Scenario with many matches on subscriptions with a finite quantity, see testWarmStartWithStaleOutput()
+    private static final int STALE_OUTPUT_SCENARIO = 16;
+
+    // Scenario with 1-2 subscriptions, see testRuleProfiling()
+    private static final int PROFILED_SCENARIO = 16;
+
+    // Scenario with independent parts, see testSolverTelemetry()
+    private static final int TELEMETRY_SCENARIO = 39;
+
     @BeforeAll
     static void initLoggerContext() {
         loggerContext = Log4J.initialize(Optional.empty(), Optional.empty());
@@ -70,11 +88,6 @@ class MatcherScenariosTest {
         }
     }
 
-    @BeforeEach
-    void init() {
-        Drools.resetIdMap();
-    }
-
     /**
      * Tests against scenario data.
      */
@@ -83,14 +96,183 @@ class MatcherScenariosTest {
     @MethodSource("listScenarios")
     void testScenario(int scenarioNumber, String description) {
         LOGGER.info("Executing {}", description);
-        Matcher matcher = new Matcher(true);
+        checkScenario(scenarioNumber, new Matcher(true));
+    }
+
+    /**
+     * Tests against scenario data, calculating scores incrementally. Scores are also checked
+     * against Scores.drl at every step.
+     */
+    @DisplayName("Run test scenarios with incremental score calculation")
+    @ParameterizedTest(name = "{1}")
+    @MethodSource("listScenarios")
+    void testScenarioWithIncrementalScore(int scenarioNumber, String description) {
+        LOGGER.info("Executing {} with incremental score calculation", description);
+        SolverOptions options = new SolverOptions();
+        options.setScoreCalculation(SolverOptions.ScoreCalculation.INCREMENTAL);
+        checkScenario(scenarioNumber, new Matcher(true, options));
+    }
+
+    /**
+     * Tests against scenario data, evaluating moves in parallel threads.
+     */
+    @DisplayName("Run test scenarios with move threads")
+    @ParameterizedTest(name = "{1}")
+    @MethodSource("listScenarios")
+    void testScenarioWithMoveThreads(int scenarioNumber, String description) {
+        LOGGER.info("Executing {} with move threads", description);
+        SolverOptions options = new SolverOptions();
+        options.setScoreCalculation(SolverOptions.ScoreCalculation.INCREMENTAL);
+        options.setMoveThreadCount("2");
+        checkScenario(scenarioNumber, new Matcher(true, options));
+    }
+
+    /**
+     * Tests against scenario data, starting from the expected solution as if it came from a previous run.
+     */
+    @DisplayName("Run test scenarios with warm start")
+    @ParameterizedTest(name = "{1}")
+    @MethodSource("listScenarios")
+    void testScenarioWithWarmStart(int scenarioNumber, String description) {
+        LOGGER.info("Executing {} with warm start", description);
+        SolverOptions options = new SolverOptions();
+        options.setScoreCalculation(SolverOptions.ScoreCalculation.INCREMENTAL);
+        checkScenario(scenarioNumber, new Matcher(true, options), getJsonOutput(scenarioNumber).getMatches());
+    }
+
+    /**
+     * Tests that starting from a previous run whose subscriptions had larger quantities still gives a
+     * solution that does not exceed subscriptions, even without local search.
+     */
+    @Test
+    void testWarmStartWithStaleOutput() {
+        JsonInput input = getJsonInput(STALE_OUTPUT_SCENARIO);
+        List<JsonMatch> previousMatches = getJsonOutput(STALE_OUTPUT_SCENARIO).getMatches();
+        input.getSubscriptions().stream()
+            .filter(s -> s.getQuantity() != null && s.getQuantity() > 1 && s.getQuantity() != Integer.MAX_VALUE)
+            .forEach(s -> s.setQuantity(s.getQuantity() / 2));
+
+        SolverOptions options = new SolverOptions();
+        options.setScoreCalculation(SolverOptions.ScoreCalculation.INCREMENTAL);
+        options.setLocalSearch(false);
+        Assignment assignment = new Matcher(true, options).match(input, previousMatches);
+
+        assertEquals(0, assignment.getScore().getHardScore(), "Subscriptions are exceeded");
+    }
+
+    /**
+     * Tests against scenario data, profiling rules. Profiling must not change results, and profiles
+     * must be written along with the other output files, counting activations of rules that fire.
+     */
+    @Test
+    void testRuleProfiling() throws IOException {
+        SolverOptions options = new SolverOptions();
+        options.setScoreCalculation(SolverOptions.ScoreCalculation.INCREMENTAL);
+        checkScenario(PROFILED_SCENARIO, new Matcher(true, options, true));
+
+        Path ruleProfile = getOutputPath(PROFILED_SCENARIO).resolve("rule_profile.csv");
+        Path agendaGroupProfile = getOutputPath(PROFILED_SCENARIO).resolve("agenda_group_profile.csv");
+        try (Reader ruleReader = Files.newBufferedReader(ruleProfile, StandardCharsets.UTF_8);
+                Reader agendaGroupReader = Files.newBufferedReader(agendaGroupProfile, StandardCharsets.UTF_8)) {
+            Map<String, CSVRecord> rules = CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(ruleReader).getRecords().stream()
+                .collect(Collectors.toMap(r -> r.get("Rule"), r -> r));
+            CSVRecord rule = rules.get("match12Subscription");
+            assertNotNull(rule, "Rule not profiled");
+            assertEquals("Matchability", rule.get("Agenda Group"));
+            assertTrue(Long.parseLong(rule.get("Activations Fired")) > 0, "Rule firings not counted");
+            assertTrue(Long.parseLong(rule.get("Facts Inserted")) > 0, "Inserted facts not counted");
+
+            Map<String, CSVRecord> agendaGroups = CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(agendaGroupReader)
+                .getRecords().stream()
+                .collect(Collectors.toMap(r -> r.get("Agenda Group"), r -> r));
+            assertTrue(Long.parseLong(agendaGroups.get("Matchability").get("Activations Fired")) > 0,
+                "Agenda group firings not counted");
+        }
+        Files.delete(ruleProfile);
+        Files.delete(agendaGroupProfile);
+    }
+
+    /**
+     * Tests against scenario data, recording solver telemetry of problem parts solved separately.
+     * Telemetry must not change results, and it must be written along with the other output files,
+     * with one sample of each metric per part.
+     */
+    @Test
+    void testSolverTelemetry() throws IOException {
+        SolverOptions options = new SolverOptions();
+        options.setScoreCalculation(SolverOptions.ScoreCalculation.INCREMENTAL);
+        options.setPartitionThreadCount(2);
+        options.setTelemetry(true);
+        checkScenario(TELEMETRY_SCENARIO, new Matcher(true, options));
+
+        Path jsonFile = getOutputPath(TELEMETRY_SCENARIO).resolve("solver_telemetry.json");
+        Path prometheusFile = getOutputPath(TELEMETRY_SCENARIO).resolve("solver_telemetry.prom");
+        List<Integer> parts = new ArrayList<>();
+        JsonParser.parseString(Files.readString(jsonFile)).getAsJsonArray()
+            .forEach(t -> parts.add(t.getAsJsonObject().get("part").getAsInt()));
+        assertTrue(parts.size() > 1, "Scenario is not partitioned");
+        assertEquals(parts.stream().sorted().collect(Collectors.toList()), parts, "Parts are not sorted");
+        List<String> steps = Files.readAllLines(prometheusFile, StandardCharsets.UTF_8).stream()
+            .filter(line -> line.startsWith("subscription_matcher_solver_steps_total{"))
+            .collect(Collectors.toList());
+        assertEquals(parts.size(), steps.size(), "Steps are not sampled once per part");
+        for (int i = 0; i < parts.size(); i++) {
+            String prefix = "subscription_matcher_solver_steps_total{part=\"" + parts.get(i) + "\"} ";
+            assertTrue(steps.get(i).startsWith(prefix) && Double.parseDouble(steps.get(i).substring(prefix.length())) > 0,
+                "No steps in part " + parts.get(i));
+        }
+        Files.delete(jsonFile);
+        Files.delete(prometheusFile);
+    }
+
+    /**
+     * Tests that solving independent parts of scenario problems separately, heuristically or exactly,
+     * gives solutions as good as solving them as a whole. Solutions with the same score can differ,
+     * so they are not compared.
+     */
+    @DisplayName("Run test scenarios with partitioning")
+    @ParameterizedTest(name = "{1}")
+    @MethodSource("listScenarios")
+    void testScenarioWithPartitioning(int scenarioNumber, String description) {
+        LOGGER.info("Executing {} with partitioning", description);
+        SolverOptions options = new SolverOptions();
+        options.setScoreCalculation(SolverOptions.ScoreCalculation.INCREMENTAL);
+        Assignment expected = new Matcher(true, options).match(getJsonInput(scenarioNumber));
+
+        options.setPartitionThreadCount(2);
+        Assignment actual = new Matcher(true, options).match(getJsonInput(scenarioNumber));
+
+        assertEquals(expected.getMatches().size(), actual.getMatches().size(), "Some matches were lost");
+        if (!actual.getMatches().isEmpty()) {
+            // scores of parts must add up to the score of the whole solution
+            MatchScoreCalculator calculator = new MatchScoreCalculator();
+            calculator.resetWorkingSolution(actual);
+            assertEquals(calculator.calculateScore(), actual.getScore(), "Merged score is not correct");
+            assertEquals(expected.getScore(), actual.getScore(), "Partitioned solution is worse");
+        }
+
+        // exact solutions of parts cannot be worse than heuristic ones
+        options.setExactMatchLimit(SolverOptions.MAX_EXACT_MATCH_LIMIT);
+        Assignment exact = new Matcher(true, options).match(getJsonInput(scenarioNumber));
+        if (!exact.getMatches().isEmpty()) {
+            MatchScoreCalculator calculator = new MatchScoreCalculator();
+            calculator.resetWorkingSolution(exact);
+            assertEquals(calculator.calculateScore(), exact.getScore(), "Exact score is not correct");
+            assertTrue(exact.getScore().compareTo(expected.getScore()) >= 0, "Exact solution is worse");
+        }
+    }
+
+    private void checkScenario(int scenarioNumber, Matcher matcher) {
+        checkScenario(scenarioNumber, matcher, List.of());
+    }
 
-        Assignment assignment = matcher.match(getJsonInput(scenarioNumber));
-        JsonOutput actualOutput = FactConverter.convertToOutput(assignment);
+    private void checkScenario(int scenarioNumber, Matcher matcher, List<JsonMatch> previousMatches) {
+        RunResult result = matcher.run(getJsonInput(scenarioNumber), previousMatches);
+        JsonOutput actualOutput = FactConverter.convertToOutput(result.getAssignment());
 
         try {
             OutputWriter outputWriter = getOutputWriter(scenarioNumber);
-            outputWriter.writeOutput(assignment, Optional.empty());
+            outputWriter.writeOutput(result, Optional.empty());
         }
         catch (IOException ex) {
             fail("Unable to write output csv");
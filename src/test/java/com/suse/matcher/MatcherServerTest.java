@@ -0,0 +1,127 @@
+package com.suse.matcher;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.suse.matcher.json.JsonOutput;
+
+import org.apache.logging.log4j.core.LoggerContext;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Tests {@link MatcherServer}.
+ */
+class MatcherServerTest {
+
+    private static LoggerContext loggerContext = null;
+
+    // Utility to convert from/to JSON
+    private static final JsonIO JSON_IO = new JsonIO();
+
+    private MatcherServer server;
+
+    private HttpClient client;
+
+    @BeforeAll
+    static void initLoggerContext() {
+        loggerContext = Log4J.initialize(Optional.empty(), Optional.empty());
+    }
+
+    @AfterAll
+    static void closeLoggerContext() {
+        if (loggerContext != null) {
+            loggerContext.close();
+        }
+    }
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = new MatcherServer(0, new Matcher(true), Optional.empty(), Optional.empty());
+        server.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop();
+    }
+
+    /**
+     * Tests that consecutive requests are matched as the command line version would.
+     */
+    @Test
+    void testMatch() throws Exception {
+        Path outputPath = Paths.get("target", "output", "server");
+        Files.createDirectories(outputPath);
+        Files.deleteIfExists(outputPath.resolve("subscription_report.csv"));
+        Files.deleteIfExists(outputPath.resolve("metrics.json"));
+
+        String input = getResourceAsString("scenarios/1/input.json");
+        JsonOutput expectedOutput = JSON_IO.loadOutput(getResourceAsString("scenarios/1/output.json"));
+
+        for (int i = 0; i < 2; i++) {
+            HttpResponse<String> response = post("?output-directory=" + outputPath, input);
+            assertEquals(200, response.statusCode(), response.body());
+
+            JsonOutput actualOutput = JSON_IO.loadOutput(response.body());
+            assertEquals(JSON_IO.toJson(expectedOutput.getMatches()), JSON_IO.toJson(actualOutput.getMatches()));
+        }
+
+        assertTrue(Files.exists(outputPath.resolve("subscription_report.csv")), "CSV report not generated");
+
+        // metrics cover a request from input parsing to report writing
+        String metrics = Files.readString(outputPath.resolve("metrics.json"));
+        for (String phase : List.of("jsonParsing", "deduction", "conflictMap", "messageCollection", "csvWriting")) {
+            assertTrue(metrics.contains("\"" + phase + "\""), "Phase " + phase + " not measured");
+        }
+    }
+
+    /**
+     * Tests that invalid requests are rejected without stopping the server.
+     */
+    @Test
+    void testInvalidRequests() throws Exception {
+        assertEquals(400, post("", "{ not json").statusCode());
+        assertEquals(400, post("?output-directory=does-not-exist", "{}").statusCode());
+
+        HttpRequest get = HttpRequest.newBuilder(getUri("")).GET().build();
+        assertEquals(405, client.send(get, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        assertEquals(200, post("", getResourceAsString("scenarios/1/input.json")).statusCode());
+    }
+
+    private HttpResponse<String> post(String query, String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(getUri(query))
+            .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
+            .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI getUri(String query) {
+        return URI.create("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() +
+            MatcherServer.MATCH_PATH + query);
+    }
+
+    private static String getResourceAsString(String path) throws IOException {
+        try (InputStream is = MatcherServerTest.class.getResourceAsStream(path)) {
+            return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.suse.matcher;
+
+import com.suse.matcher.json.JsonInput;
+import com.suse.matcher.solver.Assignment;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.LoggerContext;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Measures how time and memory needed to match grow with input size, on inputs from {@link InputGenerator}.
+ *
+ * Inputs are matched once per size, with the fast solver profile: with the default one, local search alone
+ * takes tens of seconds on the smallest inputs and dominates measurements. Peak heap is the sum of the peak
+ * usage of heap memory pools during the match, after a garbage collection, so it includes garbage that was
+ * not collected yet and is an upper bound of the memory actually needed. To run it:
+ *
+ * <pre>
+ * mvn test-compile exec:exec@scaling-benchmark
+ * </pre>
+ *
+ * Sizes are numbers of physical hosts, each with 4 guests, so default sizes go up to 1,000 systems. Other
+ * sizes can be given as arguments when running this class directly: fleets of 10k to 500k systems are
+ * 2000 to 100000 hosts, and need a heap of several GB (-Xmx) from the smallest of them on.
+ */
+public class ScalingBenchmark {
+
+    /** Solver profile, see {@link SolverOptions#loadProfiles(Optional)}. */
+    private static final String PROFILE = "fast";
+
+    /** Seed of generated inputs. */
+    private static final long SEED = 1;
+
+    /**
+     * The main method.
+     *
+     * @param args command line arguments
+     * @throws IOException if solver profiles cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        int[] sizes = args.length > 0 ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray() :
+            new int[] {10, 20, 50, 100, 200};
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(p -> p.getType() == MemoryType.HEAP)
+            .collect(Collectors.toList());
+
+        LoggerContext context = Log4J.initialize(Optional.of(Level.WARN), Optional.empty());
+        try {
+            Matcher matcher = new Matcher(false,
+                    SolverOptions.fromProfile(SolverOptions.loadProfiles(Optional.empty()), PROFILE));
+            // warm up on the smallest size, so that class loading and JIT compilation are not measured
+            matcher.match(InputGenerator.withHosts(SEED, sizes[0]).generate());
+
+            System.out.println(String.format("%10s%10s%15s%10s%15s%20s", "hosts", "systems", "subscriptions",
+                    "matches", "time (ms)", "peak heap (MB)"));
+            for (int size : sizes) {
+                JsonInput input = InputGenerator.withHosts(SEED, size).generate();
+
+                System.gc();
+                heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+                long start = System.nanoTime();
+                Assignment assignment = matcher.match(input);
+                long time = System.nanoTime() - start;
+                long peakHeap = heapPools.stream().mapToLong(p -> p.getPeakUsage().getUsed()).sum();
+
+                System.out.println(String.format("%10d%10d%15d%10d%15.2f%20.2f", size, input.getSystems().size(),
+                        input.getSubscriptions().size(), assignment.getMatches().size(), time / 1_000_000.0,
+                        peakHeap / 1024.0 / 1024.0));
+            }
+        }
+        finally {
+            context.close();
+        }
+    }
+}
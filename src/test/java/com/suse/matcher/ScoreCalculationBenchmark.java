@@ -0,0 +1,100 @@
+package com.suse.matcher;
+
+import com.suse.matcher.json.JsonInput;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.LoggerContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Compares the time needed to match test scenarios with each {@link SolverOptions.ScoreCalculation}.
+ *
+ * Scenarios are matched with production solver settings. Rule-based deduction takes the same time with
+ * any score calculation, so differences are due to the optimization phase. To run it:
+ *
+ * <pre>
+ * mvn test-compile exec:exec@score-calculation-benchmark
+ * </pre>
+ *
+ * Each scenario is matched in 5 warmup rounds, then the median time of 5 measured rounds is reported.
+ * A different number of rounds can be given as the only argument when running this class directly.
+ */
+public class ScoreCalculationBenchmark {
+
+    // Utility to convert from/to JSON
+    private static final JsonIO JSON_IO = new JsonIO();
+
+    /**
+     * The main method.
+     *
+     * @param args command line arguments
+     * @throws IOException if scenario data cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        List<JsonInput> inputs = loadScenarios();
+        SolverOptions.ScoreCalculation[] calculations = SolverOptions.ScoreCalculation.values();
+
+        LoggerContext context = Log4J.initialize(Optional.of(Level.WARN), Optional.empty());
+        try {
+            // nanoseconds by calculation and scenario, median of all rounds
+            long[][] times = new long[calculations.length][inputs.size()];
+            for (int c = 0; c < calculations.length; c++) {
+                SolverOptions options = new SolverOptions();
+                options.setScoreCalculation(calculations[c]);
+                Matcher matcher = new Matcher(false, options);
+
+                for (int i = 0; i < inputs.size(); i++) {
+                    long[] roundTimes = new long[rounds];
+                    for (int r = -rounds; r < rounds; r++) {
+                        long start = System.nanoTime();
+                        matcher.match(inputs.get(i));
+                        if (r >= 0) {
+                            roundTimes[r] = System.nanoTime() - start;
+                        }
+                    }
+                    Arrays.sort(roundTimes);
+                    times[c][i] = roundTimes[rounds / 2];
+                }
+            }
+
+            System.out.print(String.format("%-10s", "scenario"));
+            Arrays.stream(calculations).forEach(c -> System.out.print(String.format("%20s", c + " (ms)")));
+            System.out.println();
+            for (int i = 0; i < inputs.size(); i++) {
+                System.out.print(String.format("%-10d", i + 1));
+                for (int c = 0; c < calculations.length; c++) {
+                    System.out.print(String.format("%20.2f", times[c][i] / 1_000_000.0));
+                }
+                System.out.println();
+            }
+            System.out.print(String.format("%-10s", "total"));
+            for (int c = 0; c < calculations.length; c++) {
+                System.out.print(String.format("%20.2f", Arrays.stream(times[c]).sum() / 1_000_000.0));
+            }
+            System.out.println();
+        }
+        finally {
+            context.close();
+        }
+    }
+
+    private static List<JsonInput> loadScenarios() throws IOException {
+        List<JsonInput> result = new ArrayList<>();
+        for (int i = 1;; i++) {
+            try (InputStream is = ScoreCalculationBenchmark.class.getResourceAsStream("scenarios/" + i + "/input.json")) {
+                if (is == null) {
+                    return result;
+                }
+                result.add(JSON_IO.loadInput(new String(is.readAllBytes(), Charset.defaultCharset())));
+            }
+        }
+    }
+}
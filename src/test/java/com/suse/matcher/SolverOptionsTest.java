@@ -0,0 +1,115 @@
+package com.suse.matcher;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.suse.matcher.json.JsonInput;
+import com.suse.matcher.solver.Assignment;
+
+import org.apache.logging.log4j.core.LoggerContext;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Tests {@link SolverOptions}.
+ */
+class SolverOptionsTest {
+
+    private static LoggerContext loggerContext = null;
+
+    // Utility to convert from/to JSON
+    private static final JsonIO JSON_IO = new JsonIO();
+
+    @BeforeAll
+    static void initLoggerContext() {
+        loggerContext = Log4J.initialize(Optional.empty(), Optional.empty());
+    }
+
+    @AfterAll
+    static void closeLoggerContext() {
+        if (loggerContext != null) {
+            loggerContext.close();
+        }
+    }
+
+    /**
+     * Tests that shipped profiles can be used to match.
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {"fast", "balanced", "thorough"})
+    void testShippedProfile(String name) throws IOException {
+        SolverOptions options = SolverOptions.fromProfile(SolverOptions.loadProfiles(Optional.empty()), name);
+
+        JsonInput input = JSON_IO.loadInput(getResourceAsString("scenarios/1/input.json"));
+        Assignment assignment = new Matcher(true, options).match(input);
+        assertNotNull(assignment.getScore());
+        assertFalse(assignment.getMatches().stream().anyMatch(m -> m.confirmed == null), "Some matches were not evaluated");
+    }
+
+    /**
+     * Tests that the balanced profile has default options.
+     */
+    @Test
+    void testDefaultProfile() throws IOException {
+        SolverOptions defaults = new SolverOptions();
+        SolverOptions options = SolverOptions.fromProfile(SolverOptions.loadProfiles(Optional.empty()),
+                SolverOptions.DEFAULT_PROFILE);
+
+        assertEquals(defaults.getScoreCalculation(), options.getScoreCalculation());
+        assertEquals(defaults.getMoveTabuSize(), options.getMoveTabuSize());
+        assertEquals(defaults.getLateAcceptanceSize(), options.getLateAcceptanceSize());
+        assertEquals(defaults.getSelectedCountLimit(), options.getSelectedCountLimit());
+        assertEquals(defaults.getAcceptedCountLimit(), options.getAcceptedCountLimit());
+        assertEquals(defaults.getUnimprovedStepCountLimit(10), options.getUnimprovedStepCountLimit(10));
+        assertEquals(defaults.getSecondsSpentLimit(), options.getSecondsSpentLimit());
+    }
+
+    /**
+     * Tests that profiles can be changed and added.
+     */
+    @Test
+    void testCustomProfile() {
+        Properties profiles = new Properties();
+        profiles.setProperty("custom.moveTabuSize", "0");
+        profiles.setProperty("custom.simulatedAnnealingStartingTemperature", "0hard/100soft");
+        profiles.setProperty("custom.unimprovedStepCountLimit", " 20 ");
+
+        SolverOptions options = SolverOptions.fromProfile(profiles, "custom");
+        assertEquals(0, options.getMoveTabuSize());
+        assertEquals(Optional.of("0hard/100soft"), options.getSimulatedAnnealingStartingTemperature());
+        assertEquals(20, options.getUnimprovedStepCountLimit(1_000));
+    }
+
+    /**
+     * Tests that invalid profiles are rejected.
+     */
+    @Test
+    void testInvalidProfile() {
+        Properties profiles = new Properties();
+        profiles.setProperty("unknownOption.foo", "1");
+        profiles.setProperty("invalidValue.acceptedCountLimit", "0");
+        profiles.setProperty("noAcceptor.moveTabuSize", "0");
+
+        assertThrows(IllegalArgumentException.class, () -> SolverOptions.fromProfile(profiles, "missing"));
+        assertThrows(IllegalArgumentException.class, () -> SolverOptions.fromProfile(profiles, "unknownOption"));
+        assertThrows(IllegalArgumentException.class, () -> SolverOptions.fromProfile(profiles, "invalidValue"));
+        assertThrows(IllegalArgumentException.class, () -> SolverOptions.fromProfile(profiles, "noAcceptor"));
+    }
+
+    private static String getResourceAsString(String name) throws IOException {
+        try (InputStream is = SolverOptionsTest.class.getResourceAsStream(name)) {
+            return new String(is.readAllBytes(), Charset.defaultCharset());
+        }
+    }
+}